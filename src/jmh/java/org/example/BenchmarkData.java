@@ -0,0 +1,77 @@
+package org.example;
+
+import org.example.model.Client;
+import org.example.model.House;
+import org.example.model.RentedHouse;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// deterministic entities shaped like the rows in backup.sql
+public final class BenchmarkData {
+    public static final String[] DISTRICTS = {"Центр", "Московский", "Октябрьский", "Советский", "Железнодорожный"};
+    public static final String[] COMFORT_CLASSES = {"economy", "comfort", "business", "topClass"};
+
+    private BenchmarkData() {
+    }
+
+    public static List<House> houses(int count) {
+        var random = new Random(42);
+        List<House> houses = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            houses.add(house(i, random));
+        }
+        return houses;
+    }
+
+    public static House house(long id, Random random) {
+        var house = new House();
+        house.setId(id);
+        house.setPhotoLink("http://example.com/photo" + id + ".jpg");
+        house.setAddress(id + " Lermontova St");
+        house.setParkingSpacesCount(random.nextInt(4));
+        house.setPricePerDay(BigDecimal.valueOf(50 + random.nextInt(450)).setScale(2));
+        house.setDistrict(DISTRICTS[random.nextInt(DISTRICTS.length)]);
+        house.setComfortClass(COMFORT_CLASSES[random.nextInt(COMFORT_CLASSES.length)]);
+        house.setDescription("Beautiful house with a great view");
+        house.setDiscountPrice(random.nextBoolean() ? null : BigDecimal.valueOf(40).setScale(2));
+        house.setMapLocation(new BigDecimal[]{
+                BigDecimal.valueOf(54.55 + random.nextDouble() * 0.15).setScale(7, RoundingMode.HALF_UP),
+                BigDecimal.valueOf(39.65 + random.nextDouble() * 0.15).setScale(7, RoundingMode.HALF_UP)});
+        house.setAdditionDate(Timestamp.valueOf("2023-01-01 15:00:00"));
+        return house;
+    }
+
+    public static List<RentedHouse> deals(int count) {
+        var random = new Random(42);
+        List<RentedHouse> deals = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            var deal = new RentedHouse();
+            deal.setId((long) i);
+            deal.setIdHouse((long) random.nextInt(1000) + 1);
+            deal.setIdClient((long) random.nextInt(100) + 1);
+            deal.setRentalStartDate(Timestamp.valueOf("2023-12-29 01:39:16.356"));
+            deal.setRentalDuration(1 + random.nextInt(14));
+            deal.setRentalEndDate(Timestamp.valueOf("2024-01-05 01:39:16.356"));
+            deal.setTotalAmount(BigDecimal.valueOf(100 + random.nextInt(5000)).setScale(2));
+            deals.add(deal);
+        }
+        return deals;
+    }
+
+    public static Client client(long id) {
+        var client = new Client();
+        client.setId(id);
+        client.setLogin("user" + id);
+        client.setPassword("5e884898da28047151d0e56f8dc6292773603d0d6aabbdd62a11ef721d1542d8");
+        client.setStatus("user");
+        client.setPhoneNumber("234567890" + id);
+        client.setEmail("user" + id + "@example.com");
+        client.setBalance(BigDecimal.valueOf(200).setScale(2));
+        return client;
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.query;
+
+import org.example.BenchmarkData;
+import org.example.index.HouseAvailabilityIndex;
+import org.example.model.House;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory side of the free-house search: building the criteria, filtering and the availability index.
+ * The SQL statement itself is measured by the load tests against PostgreSQL.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FreeHouseSearchBenchmark {
+    @Param({"1000", "10000"})
+    private int houseCount;
+
+    private List<House> houses;
+    private HouseAvailabilityIndex index;
+    private FreeHouseCriteria districtCriteria;
+    private FreeHouseCriteria priceCriteria;
+
+    @Setup
+    public void setUp() {
+        houses = BenchmarkData.houses(houseCount);
+        index = new HouseAvailabilityIndex();
+        houses.forEach(index::putHouse);
+
+        districtCriteria = criteria();
+        priceCriteria = FreeHouseCriteria.builder().minPrice(BigDecimal.valueOf(100)).build();
+    }
+
+    @Benchmark
+    public FreeHouseCriteria criteria() {
+        return FreeHouseCriteria.builder()
+                .comfortClass("Comfort")
+                .districts(List.of("Центр", "Московский"))
+                .maxPrice(BigDecimal.valueOf(300))
+                .withDiscount(true)
+                .build();
+    }
+
+    @Benchmark
+    public int matchAll() {
+        int matches = 0;
+        for (var house : houses) {
+            if (districtCriteria.matches(house)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public List<House> indexByDistrict() {
+        return index.findFree(districtCriteria);
+    }
+
+    @Benchmark
+    public List<House> indexByPrice() {
+        return index.findFree(priceCriteria);
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.BenchmarkData;
+import org.example.model.House;
+import org.example.model.RentedHouse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+    // same shape as the wrappers of HouseService and RentedHouseService
+    private record Houses(List<House> houses) {
+    }
+
+    private record RentedHouses(List<RentedHouse> rentedHouses) {
+    }
+
+    private final ObjectMapper mapper = JsonSupport.MAPPER;
+
+    private House house;
+    private RentedHouse deal;
+    private Houses houses;
+    private RentedHouses deals;
+    private String houseJson;
+    private String dealJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        house = BenchmarkData.house(1, new Random(1));
+        deal = BenchmarkData.deals(1).get(0);
+        houses = new Houses(BenchmarkData.houses(100));
+        deals = new RentedHouses(BenchmarkData.deals(100));
+        houseJson = mapper.writeValueAsString(house);
+        dealJson = mapper.writeValueAsString(deal);
+    }
+
+    @Benchmark
+    public String responseMessageJson() {
+        return ResponseMessage.HOUSE_NOT_FOUND.getJSON();
+    }
+
+    @Benchmark
+    public byte[] responseMessageBytes() {
+        return ResponseMessage.HOUSE_NOT_FOUND.getJSONBytes();
+    }
+
+    // baselines: what every response did before the mapper was shared, a new mapper and its serializer caches
+    @Benchmark
+    public String responseMessageNewMapper() throws Exception {
+        return new ObjectMapper().writeValueAsString(Map.of("message", "House not found"));
+    }
+
+    @Benchmark
+    public byte[] writeHouseNewMapper() throws Exception {
+        return new ObjectMapper().writeValueAsBytes(house);
+    }
+
+    @Benchmark
+    public byte[] writeHouse() throws Exception {
+        return mapper.writeValueAsBytes(house);
+    }
+
+    @Benchmark
+    public House readHouse() throws Exception {
+        return mapper.readValue(houseJson, House.class);
+    }
+
+    @Benchmark
+    public byte[] writeRentedHouse() throws Exception {
+        return mapper.writeValueAsBytes(deal);
+    }
+
+    @Benchmark
+    public RentedHouse readRentedHouse() throws Exception {
+        return mapper.readValue(dealJson, RentedHouse.class);
+    }
+
+    @Benchmark
+    public byte[] writeHouses() throws Exception {
+        return mapper.writeValueAsBytes(houses);
+    }
+
+    @Benchmark
+    public byte[] writeRentedHouses() throws Exception {
+        return mapper.writeValueAsBytes(deals);
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.service;
+
+import org.example.BenchmarkData;
+import org.example.model.Client;
+import org.example.model.House;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EntityMerger against the per-call reflection loop that editClient/editHouse used before it. Every invocation
+ * merges the other of two edits, so each call has changed properties to copy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntityMergeBenchmark {
+    private final EntityMerger<House> houseMerger =
+            new EntityMerger<>(House.class, "id", "additionDate", "lastChangeDate");
+    private final EntityMerger<Client> clientMerger = new EntityMerger<>(Client.class, "id", "version");
+
+    private House house;
+    private House[] houseEdits;
+    private Client client;
+    private Client[] clientEdits;
+    private int edit;
+
+    @Setup
+    public void setUp() {
+        house = BenchmarkData.house(1, new Random(1));
+        houseEdits = new House[]{BenchmarkData.house(1, new Random(2)), BenchmarkData.house(1, new Random(3))};
+
+        client = BenchmarkData.client(1);
+        clientEdits = new Client[]{BenchmarkData.client(1), BenchmarkData.client(1)};
+        clientEdits[0].setEmail("first@example.com");
+        clientEdits[1].setBalance(BigDecimal.valueOf(250).setScale(2));
+    }
+
+    @Benchmark
+    public Set<String> mergeHouse() {
+        return houseMerger.merge(house, houseEdits[edit ^= 1]);
+    }
+
+    @Benchmark
+    public House reflectiveMergeHouse() throws Exception {
+        return reflectiveMerge(House.class, house, houseEdits[edit ^= 1]);
+    }
+
+    @Benchmark
+    public Set<String> mergeClient() {
+        return clientMerger.merge(client, clientEdits[edit ^= 1]);
+    }
+
+    @Benchmark
+    public Client reflectiveMergeClient() throws Exception {
+        return reflectiveMerge(Client.class, client, clientEdits[edit ^= 1]);
+    }
+
+    // the former loop of editClient/editHouse
+    private static <T> T reflectiveMerge(Class<T> entityClass, T oldEntity, T editedEntity) throws Exception {
+        var methods = oldEntity.getClass().getMethods();
+        for (var method : methods) {
+            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0
+                    && !void.class.equals(method.getReturnType())) {
+                if (!Objects.equals(method.invoke(oldEntity), method.invoke(editedEntity))) {
+                    var setterName = method.getName().replace("get", "set");
+                    var setter = entityClass.getMethod(setterName, method.getReturnType());
+                    setter.invoke(oldEntity, method.invoke(editedEntity));
+                }
+            }
+        }
+        return oldEntity;
+    }
+}
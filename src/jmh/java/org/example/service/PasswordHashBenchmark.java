@@ -0,0 +1,34 @@
+package org.example.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordHashBenchmark {
+    private String password;
+    private byte[] digest;
+
+    @Setup
+    public void setUp() throws Exception {
+        password = "password1";
+        digest = MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public String hashPassword() {
+        return ClientService.hashPassword(password);
+    }
+
+    @Benchmark
+    public String bytesToHex() {
+        return ClientService.bytesToHex(digest);
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.loadtest;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * org.example.Main in a child JVM, so the server does not share heap, GC and CPU accounting with the load driver.
+ */
+final class AppProcess implements AutoCloseable {
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    private final Process process;
+    private final int port;
+
+    AppProcess(String jdbcUrl, boolean virtualThreads, Path logFile) throws IOException, InterruptedException {
+        try (var socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Dhibernate.connection.url=" + jdbcUrl); // -Dhibernate.* overrides hibernate.cfg.xml
+        command.add("-Dhibernate.connection.username=" + SeededDatabase.USER);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("org.example.Main");
+        command.add("--server.port=" + port);
+        command.add("--spring.threads.virtual.enabled=" + virtualThreads);
+
+        process = new ProcessBuilder(command)
+                .directory(logFile.toAbsolutePath().getParent().toFile()) // the app's log4j files go there too
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        awaitStartup();
+    }
+
+    URI baseUri() {
+        return URI.create("http://localhost:" + port);
+    }
+
+    private void awaitStartup() throws InterruptedException, IOException {
+        var client = HttpClient.newHttpClient();
+        var request = HttpRequest.newBuilder(baseUri().resolve("/api/metrics/pool")).build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IOException("Application exited with code " + process.exitValue());
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(500);
+        }
+
+        close();
+        throw new IOException("Application did not start within " + STARTUP_TIMEOUT);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy(); // SIGTERM, lets Spring close the session factory
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.example.loadtest;
+
+import java.util.*;
+
+/**
+ * Latencies and response codes of one load worker; the recorders of all workers are merged into the report.
+ */
+final class LatencyRecorder {
+    static final int IO_ERROR = -1;
+
+    record OperationReport(long requests, double throughputPerSecond, Map<String, Long> statusCounts,
+                           double p50Millis, double p90Millis, double p99Millis, double p999Millis,
+                           double maxMillis) {
+    }
+
+    private final Map<Operation, long[]> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Integer> counts = new EnumMap<>(Operation.class);
+    private final Map<Operation, Map<Integer, Long>> statuses = new EnumMap<>(Operation.class);
+
+    void record(Operation operation, int status, long nanos) {
+        int count = counts.getOrDefault(operation, 0);
+        var values = latencies.computeIfAbsent(operation, k -> new long[1024]);
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+            latencies.put(operation, values);
+        }
+        values[count] = nanos;
+        counts.put(operation, count + 1);
+        statuses.computeIfAbsent(operation, k -> new TreeMap<>()).merge(status, 1L, Long::sum);
+    }
+
+    static Map<String, OperationReport> report(List<LatencyRecorder> recorders, double seconds) {
+        Map<String, OperationReport> reports = new LinkedHashMap<>();
+        for (var operation : Operation.values()) {
+            int total = recorders.stream().mapToInt(recorder -> recorder.counts.getOrDefault(operation, 0)).sum();
+            var merged = new long[total];
+            Map<String, Long> statusCounts = new TreeMap<>();
+
+            int offset = 0;
+            for (var recorder : recorders) {
+                int count = recorder.counts.getOrDefault(operation, 0);
+                if (count > 0) {
+                    System.arraycopy(recorder.latencies.get(operation), 0, merged, offset, count);
+                    offset += count;
+                    recorder.statuses.get(operation).forEach((status, n) ->
+                            statusCounts.merge(status == IO_ERROR ? "io-error" : String.valueOf(status), n, Long::sum));
+                }
+            }
+            Arrays.sort(merged);
+
+            reports.put(operation.label, new OperationReport(total, total / seconds, statusCounts,
+                    percentile(merged, 0.50), percentile(merged, 0.90), percentile(merged, 0.99),
+                    percentile(merged, 0.999), percentile(merged, 1.0)));
+        }
+
+        return reports;
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = Math.max(0, (int) Math.ceil(quantile * sorted.length) - 1);
+        return sorted[index] / 1_000_000.0;
+    }
+}
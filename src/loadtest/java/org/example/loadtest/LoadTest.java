@@ -0,0 +1,129 @@
+package org.example.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * End-to-end load test: for every request mode a fresh embedded PostgreSQL is seeded from backup.sql, the
+ * application is started against it and a closed-loop mix of requests is run by a fixed number of concurrent
+ * workers. Throughput and latency percentiles go to {@code <output>/loadtest-<mode>.json}.
+ * <p>
+ * Arguments (key=value): duration and warmup in seconds, concurrency, clients and houses to generate,
+ * modes (platform,virtual), dump (the pg_dump file), output (directory) and label (stored in the report,
+ * e.g. a commit id).
+ */
+public final class LoadTest {
+    public record Report(String label, String mode, Instant startedAt, int concurrency, int warmupSeconds,
+                         int durationSeconds, long requests, double throughputPerSecond,
+                         Map<String, LatencyRecorder.OperationReport> operations) {
+    }
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "duration", "60", "warmup", "10", "concurrency", "64", "clients", "50", "houses", "2000",
+                "modes", "platform,virtual", "dump", "backup.sql", "output", "target/loadtest", "label", "local"));
+        for (var arg : args) {
+            var pair = arg.split("=", 2);
+            if (pair.length != 2 || !options.containsKey(pair[0])) {
+                throw new IllegalArgumentException("Unknown argument '" + arg + "', expected one of " + options.keySet());
+            }
+            options.put(pair[0], pair[1]);
+        }
+
+        var output = Path.of(options.get("output"));
+        Files.createDirectories(output);
+        var mapper = new ObjectMapper().findAndRegisterModules().enable(SerializationFeature.INDENT_OUTPUT)
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        for (var mode : options.get("modes").split(",")) {
+            if (!mode.equals("platform") && !mode.equals("virtual")) {
+                throw new IllegalArgumentException("Unknown mode '" + mode + "', expected platform or virtual");
+            }
+
+            var report = run(mode, options, output);
+            var file = output.resolve("loadtest-" + mode + ".json");
+            mapper.writeValue(file.toFile(), report);
+
+            System.out.printf("%s: %d requests, %.1f req/s -> %s%n", mode, report.requests(),
+                    report.throughputPerSecond(), file);
+            report.operations().forEach((name, operation) -> System.out.printf(
+                    "  %-12s %8d  p50 %8.2f ms  p99 %8.2f ms  p999 %8.2f ms  %s%n", name, operation.requests(),
+                    operation.p50Millis(), operation.p99Millis(), operation.p999Millis(), operation.statusCounts()));
+        }
+    }
+
+    private static Report run(String mode, Map<String, String> options, Path output) throws Exception {
+        int warmup = Integer.parseInt(options.get("warmup"));
+        int duration = Integer.parseInt(options.get("duration"));
+        int concurrency = Integer.parseInt(options.get("concurrency"));
+
+        try (var database = new SeededDatabase(Path.of(options.get("dump")));
+             var app = new AppProcess(database.jdbcUrl(), mode.equals("virtual"), output.resolve("app-" + mode + ".log"));
+             var executor = Executors.newVirtualThreadPerTaskExecutor();
+             var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor).build()) {
+            var workload = new Workload(client, app.baseUri(), Integer.parseInt(options.get("clients")),
+                    Integer.parseInt(options.get("houses")));
+
+            var startedAt = Instant.now();
+            long measureFrom = System.nanoTime() + warmup * 1_000_000_000L;
+            long measureUntil = measureFrom + duration * 1_000_000_000L;
+
+            List<LatencyRecorder> recorders = new ArrayList<>();
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                var recorder = new LatencyRecorder();
+                recorders.add(recorder);
+                workers.add(executor.submit(() -> {
+                    drive(client, workload, recorder, measureFrom, measureUntil);
+                    return null;
+                }));
+            }
+            for (var worker : workers) {
+                worker.get();
+            }
+
+            var operations = LatencyRecorder.report(recorders, duration);
+            long requests = operations.values().stream().mapToLong(LatencyRecorder.OperationReport::requests).sum();
+            return new Report(options.get("label"), mode, startedAt, concurrency, warmup, duration, requests,
+                    (double) requests / duration, operations);
+        }
+    }
+
+    // one closed-loop worker: the next request is sent when the previous response has been read
+    private static void drive(HttpClient client, Workload workload, LatencyRecorder recorder,
+                              long measureFrom, long measureUntil) throws InterruptedException {
+        var random = ThreadLocalRandom.current();
+
+        for (long now = System.nanoTime(); now < measureUntil; now = System.nanoTime()) {
+            var operation = Operation.pick(random.nextInt(Operation.totalWeight()));
+            var request = workload.request(operation, random);
+
+            long start = System.nanoTime();
+            int status;
+            try {
+                status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (IOException e) {
+                status = LatencyRecorder.IO_ERROR;
+            }
+            long end = System.nanoTime();
+
+            if (start >= measureFrom && end <= measureUntil) {
+                recorder.record(operation, status, end - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.loadtest;
+
+import java.util.Arrays;
+
+// endpoints of the mix with their share of the requests
+enum Operation {
+    FREE_HOUSES("free-houses", 40),
+    LOGIN("login", 25),
+    USER_DEALS("user-deals", 25),
+    CREATE_DEAL("create-deal", 10);
+
+    private static final int TOTAL_WEIGHT = Arrays.stream(values()).mapToInt(operation -> operation.weight).sum();
+
+    final String label;
+    final int weight;
+
+    Operation(String label, int weight) {
+        this.label = label;
+        this.weight = weight;
+    }
+
+    static Operation pick(int roll) {
+        int bound = 0;
+        for (var operation : values()) {
+            bound += operation.weight;
+            if (roll < bound) {
+                return operation;
+            }
+        }
+        return FREE_HOUSES;
+    }
+
+    static int totalWeight() {
+        return TOTAL_WEIGHT;
+    }
+}
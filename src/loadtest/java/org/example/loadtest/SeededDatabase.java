@@ -0,0 +1,85 @@
+package org.example.loadtest;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Embedded PostgreSQL with the "House-Sharing" database restored from a plain pg_dump file (backup.sql).
+ */
+final class SeededDatabase implements AutoCloseable {
+    static final String DATABASE = "House-Sharing";
+    static final String USER = "postgres";
+
+    private final EmbeddedPostgres postgres;
+
+    SeededDatabase(Path dumpFile) throws IOException, SQLException {
+        postgres = EmbeddedPostgres.builder().start();
+        try (var connection = postgres.getPostgresDatabase().getConnection()) {
+            connection.createStatement().execute("CREATE DATABASE \"" + DATABASE + "\"");
+        }
+        try (var connection = DriverManager.getConnection(jdbcUrl(), USER, "")) {
+            restore(connection, dumpFile);
+            syncSequences(connection);
+        }
+    }
+
+    String jdbcUrl() {
+        return "jdbc:postgresql://localhost:" + postgres.getPort() + "/" + DATABASE;
+    }
+
+    // runs the statements of the dump one by one and feeds its COPY blocks to the copy API
+    private static void restore(Connection connection, Path dumpFile) throws IOException, SQLException {
+        var lines = Files.readAllLines(dumpFile);
+        var statement = new StringBuilder();
+        int dollarQuotes = 0;
+
+        for (int i = 0; i < lines.size(); i++) {
+            var line = lines.get(i);
+            if (statement.isEmpty() && (line.isBlank() || line.startsWith("--"))) {
+                continue;
+            }
+
+            if (statement.isEmpty() && line.startsWith("COPY ")) {
+                var data = new StringBuilder();
+                for (i++; !lines.get(i).equals("\\."); i++) {
+                    data.append(lines.get(i)).append('\n');
+                }
+                connection.unwrap(PGConnection.class).getCopyAPI()
+                        .copyIn(line.substring(0, line.lastIndexOf(';')), new StringReader(data.toString()));
+                continue;
+            }
+
+            statement.append(line).append('\n');
+            dollarQuotes += line.split("\\$\\$", -1).length - 1;
+            if (line.stripTrailing().endsWith(";") && dollarQuotes % 2 == 0) { // not inside a function body
+                try (var sql = connection.createStatement()) {
+                    sql.execute(statement.toString());
+                }
+                statement.setLength(0);
+            }
+        }
+    }
+
+    // the dump sets some id sequences below the ids of its rows, so the first inserts would collide
+    private static void syncSequences(Connection connection) throws SQLException {
+        for (var table : new String[]{"client", "house", "rented_house"}) {
+            try (var sql = connection.createStatement()) {
+                sql.execute("SELECT setval('public." + table + "_id_seq', "
+                        + "(SELECT coalesce(max(id), 0) + 1 FROM public." + table + "), false)");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        postgres.close();
+    }
+}
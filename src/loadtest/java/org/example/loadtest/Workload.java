@@ -0,0 +1,110 @@
+package org.example.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the requests of the mix. Load clients are registered through the API first, so logins succeed and
+ * deals are made by existing clients. The seeded catalog is extended with generated houses in its districts and
+ * comfort classes, since every booking keeps a house busy for at least a day and the seed data would be booked
+ * out within seconds.
+ */
+final class Workload {
+    private static final String PASSWORD = "load-test";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final URI baseUri;
+    private final List<String> logins = new ArrayList<>();
+    private final List<Long> clientIds = new ArrayList<>();
+    private final List<Long> houseIds = new ArrayList<>();
+    private final List<String> freeHouseQueries = new ArrayList<>();
+
+    Workload(HttpClient client, URI baseUri, int clientCount, int houseCount) throws IOException, InterruptedException {
+        this.baseUri = baseUri;
+
+        for (int i = 0; i < clientCount; i++) {
+            var login = "load-test-" + i;
+            var body = mapper.createObjectNode()
+                    .put("login", login)
+                    .put("password", PASSWORD)
+                    .put("phoneNumber", String.valueOf(9_000_000_000L + i));
+            var created = send(client, post("/api/clients/create", body.toString()));
+            logins.add(login);
+            clientIds.add(created.get("id").asLong());
+        }
+
+        var seededHouses = send(client, HttpRequest.newBuilder(baseUri.resolve("/api/houses/all")).build()).get("houses");
+        var random = new Random(42);
+        for (int i = 0; i < houseCount; i++) {
+            var template = seededHouses.get(random.nextInt(seededHouses.size()));
+            var body = mapper.createObjectNode()
+                    .put("address", "Load test house " + i)
+                    .put("pricePerDay", 50 + random.nextInt(450))
+                    .put("parkingSpacesCount", random.nextInt(4))
+                    .put("district", template.get("district").asText())
+                    .put("comfortClass", template.get("comfortClass").asText())
+                    .set("mapLocation", template.get("mapLocation"));
+            houseIds.add(send(client, post("/api/houses/create", body.toString())).get("id").asLong());
+        }
+
+        freeHouseQueries.add("");
+        for (var house : seededHouses) {
+            houseIds.add(house.get("id").asLong());
+            freeHouseQueries.add("?districts=" + encode(house.get("district").asText()));
+            freeHouseQueries.add("?comfort-class=" + encode(house.get("comfortClass").asText())
+                    + "&max-price=" + house.get("pricePerDay").asText());
+        }
+        freeHouseQueries.add("?with-discount=true&min-parking-spaces=1");
+    }
+
+    HttpRequest request(Operation operation, Random random) {
+        return switch (operation) {
+            case FREE_HOUSES -> HttpRequest.newBuilder(
+                    baseUri.resolve("/api/houses/free" + freeHouseQueries.get(random.nextInt(freeHouseQueries.size()))))
+                    .build();
+            case LOGIN -> post("/api/clients/login", mapper.createObjectNode()
+                    .put("login", logins.get(random.nextInt(logins.size())))
+                    .put("password", PASSWORD)
+                    .toString());
+            case USER_DEALS -> HttpRequest.newBuilder(
+                    baseUri.resolve("/api/rented-houses/user/" + clientIds.get(random.nextInt(clientIds.size()))))
+                    .build();
+            case CREATE_DEAL -> post("/api/rented-houses/create-deal", mapper.createObjectNode()
+                    .put("idHouse", houseIds.get(random.nextInt(houseIds.size())))
+                    .put("idClient", clientIds.get(random.nextInt(clientIds.size())))
+                    .put("rentalDuration", 1)
+                    .put("totalAmount", 100)
+                    .toString());
+        };
+    }
+
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private JsonNode send(HttpClient client, HttpRequest request) throws IOException, InterruptedException {
+        var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IOException(request.uri() + " returned " + response.statusCode() + ": " + response.body());
+        }
+        return mapper.readTree(response.body());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -3,6 +3,7 @@ package org.example.ExceptionHandler;
 import org.example.response.ErrorMessageResponse;
 import org.example.response.ResponseMessage;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
 public class ExceptionHandler {
@@ -11,7 +12,7 @@ public class ExceptionHandler {
     }
 
     public static ResponseEntity<?> handleInfoException(ResponseMessage message, HttpStatus status) {
-        return new ResponseEntity<>(message.getJSON(), status);
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(message.getJSONBytes());
     }
 
     public static ResponseEntity<?> handleServerException(Exception e) {
@@ -0,0 +1,104 @@
+package org.example.bulk;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 records one at a time: comma separated, fields with commas, quotes or line breaks in double quotes,
+ * quotes inside them doubled. Only the current record is held in memory.
+ */
+final class CsvReader {
+    private final Reader in;
+    private final int maxRecordLength;
+    private int line = 1;
+    private int recordLine;
+    private boolean tooLong;
+
+    // records longer than maxRecordLength characters are skipped, so an unterminated quote cannot fill the memory
+    CsvReader(Reader in, int maxRecordLength) {
+        this.in = in;
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    // line on which the last record started
+    int recordLine() {
+        return recordLine;
+    }
+
+    // the last record was longer than the limit, next() returned no fields for it
+    boolean tooLong() {
+        return tooLong;
+    }
+
+    // null at the end of the input
+    List<String> next() throws IOException {
+        int c = in.read();
+        if (c == -1) {
+            return null;
+        }
+        recordLine = line;
+        tooLong = false;
+
+        List<String> fields = new ArrayList<>();
+        var field = new StringBuilder();
+        int fieldLength = 0; // also counted while the record is skipped, to tell where a quoted field starts
+        int length = 0;
+        boolean quoted = false;
+        while (c != -1) {
+            if (!tooLong && ++length > maxRecordLength) {
+                tooLong = true;
+                fields.clear();
+                field = null; // the rest of the record is only scanned for its end
+            }
+
+            if (quoted) {
+                if (c == '"') {
+                    c = in.read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue; // c is the character after the closing quote
+                    }
+                } else if (c == '\n') {
+                    line++;
+                }
+                append(field, c);
+                fieldLength++;
+            } else if (c == '"' && fieldLength == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                if (field != null) {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                }
+                fieldLength = 0;
+            } else if (c == '\n') {
+                line++;
+                break;
+            } else if (c != '\r') {
+                append(field, c);
+                fieldLength++;
+            }
+            c = in.read();
+        }
+        if (field != null) {
+            fields.add(field.toString());
+        }
+
+        return fields;
+    }
+
+    private static void append(StringBuilder field, int c) {
+        if (field != null) {
+            field.append((char) c);
+        }
+    }
+
+    static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,204 @@
+package org.example.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.example.model.House;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * File formats of the house import and export, both read and written one house at a time.
+ * <p>
+ * NDJSON has one House JSON object per line. CSV has a header row with the JSON property names (any subset and
+ * order on import) and the values as in JSON, mapLocation as "latitude;longitude", so an export can be imported
+ * again.
+ */
+public enum HouseFormat {
+    NDJSON("application/x-ndjson"),
+    CSV("text/csv");
+
+    // a house read from the input, or why the line could not be read
+    record Row(int line, House house, String error) {
+    }
+
+    interface RowReader {
+        // null at the end of the input
+        Row next() throws IOException;
+    }
+
+    private static final List<String> CSV_COLUMNS = List.of("id", "photoLink", "address", "parkingSpacesCount",
+            "pricePerDay", "district", "comfortClass", "description", "discountPrice", "mapLocation", "additionDate",
+            "lastChangeDate");
+    private static final String LOCATION_SEPARATOR = ";";
+    private static final int FLUSH_EVERY = 256;
+    // characters of a CSV record or NDJSON line; longer rows are skipped and reported, so memory stays bounded
+    private static final int MAX_ROW_LENGTH = 64 * 1024;
+    private static final String ROW_TOO_LONG = "Row is longer than " + MAX_ROW_LENGTH + " characters";
+
+    private final String mediaType;
+
+    HouseFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    // by media type (parameters such as charset are ignored), null for other types
+    public static HouseFormat of(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (var format : values()) {
+            if (contentType.toLowerCase(Locale.ROOT).startsWith(format.mediaType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    public void write(ObjectMapper mapper, OutputStream outputStream, Stream<House> houses) throws IOException {
+        var out = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        if (this == CSV) {
+            out.write(String.join(",", CSV_COLUMNS));
+            out.write('\n');
+        }
+
+        int written = 0;
+        for (var iterator = houses.iterator(); iterator.hasNext(); ) {
+            var house = iterator.next();
+            out.write(this == CSV ? csvRow(mapper, house) : mapper.writeValueAsString(house));
+            out.write('\n');
+            if (++written % FLUSH_EVERY == 0) {
+                out.flush();
+            }
+        }
+        out.flush();
+    }
+
+    // the reader fails with IllegalArgumentException when the CSV header names unknown columns
+    RowReader reader(ObjectMapper mapper, InputStream inputStream) throws IOException {
+        var in = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        return this == CSV ? csvReader(mapper, in) : ndjsonReader(mapper, in);
+    }
+
+    private static RowReader ndjsonReader(ObjectMapper mapper, BufferedReader in) {
+        var houseReader = mapper.readerFor(House.class);
+        var line = new StringBuilder();
+        int[] lineNumber = {0};
+        return () -> {
+            boolean read;
+            do {
+                read = readLine(in, line);
+                lineNumber[0]++;
+            } while (read && line.toString().isBlank());
+            if (!read) {
+                return null;
+            }
+            if (line.length() > MAX_ROW_LENGTH) {
+                return new Row(lineNumber[0], null, ROW_TOO_LONG);
+            }
+
+            try {
+                return new Row(lineNumber[0], houseReader.readValue(line.toString()), null);
+            } catch (JsonProcessingException e) {
+                return new Row(lineNumber[0], null, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        };
+    }
+
+    private static RowReader csvReader(ObjectMapper mapper, BufferedReader in) throws IOException {
+        var csv = new CsvReader(in, MAX_ROW_LENGTH);
+        var header = csv.next();
+        if (header == null) {
+            return () -> null;
+        }
+        if (csv.tooLong()) {
+            throw new IllegalArgumentException("CSV header is longer than " + MAX_ROW_LENGTH + " characters");
+        }
+        var unknownColumns = header.stream().filter(column -> !CSV_COLUMNS.contains(column)).toList();
+        if (!unknownColumns.isEmpty()) {
+            throw new IllegalArgumentException("Unknown CSV columns " + unknownColumns + ", expected " + CSV_COLUMNS);
+        }
+
+        return () -> {
+            List<String> values;
+            do {
+                values = csv.next();
+            } while (values != null && values.size() == 1 && values.get(0).isBlank());
+            if (values == null) {
+                return null;
+            }
+            if (csv.tooLong()) {
+                return new Row(csv.recordLine(), null, ROW_TOO_LONG);
+            }
+            if (values.size() != header.size()) {
+                return new Row(csv.recordLine(), null,
+                        "Expected " + header.size() + " values, found " + values.size());
+            }
+
+            var json = mapper.createObjectNode();
+            for (int i = 0; i < header.size(); i++) {
+                var value = values.get(i);
+                if (value.isEmpty()) {
+                    continue;
+                }
+                if (header.get(i).equals("mapLocation")) {
+                    var location = json.putArray("mapLocation");
+                    Arrays.stream(value.split(LOCATION_SEPARATOR)).map(String::trim).forEach(location::add);
+                } else {
+                    json.put(header.get(i), value);
+                }
+            }
+
+            try {
+                return new Row(csv.recordLine(), mapper.treeToValue(json, House.class), null);
+            } catch (JsonProcessingException e) {
+                return new Row(csv.recordLine(), null, "Invalid value: " + e.getOriginalMessage());
+            }
+        };
+    }
+
+    // the next line without its terminator into line, false at the end of the input; characters past
+    // MAX_ROW_LENGTH are skipped, a longer line ends up one character over the limit
+    private static boolean readLine(Reader in, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c = in.read();
+        if (c == -1) {
+            return false;
+        }
+        for (; c != -1 && c != '\n'; c = in.read()) {
+            if (c != '\r' && line.length() <= MAX_ROW_LENGTH) {
+                line.append((char) c);
+            }
+        }
+        return true;
+    }
+
+    private static String csvRow(ObjectMapper mapper, House house) {
+        ObjectNode json = mapper.valueToTree(house);
+        return CSV_COLUMNS.stream()
+                .map(column -> CsvReader.escape(csvValue(json.get(column))))
+                .collect(Collectors.joining(","));
+    }
+
+    private static String csvValue(JsonNode value) {
+        if (value == null || value.isNull()) {
+            return "";
+        }
+        if (value.isArray()) {
+            List<String> items = new ArrayList<>(value.size());
+            value.forEach(item -> items.add(csvValue(item)));
+            return String.join(LOCATION_SEPARATOR, items);
+        }
+        // tree decimals lose trailing zeros and would print as 1.5E+2
+        return value.isNumber() ? value.decimalValue().toPlainString() : value.asText();
+    }
+}
@@ -0,0 +1,213 @@
+package org.example.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.hibernateController.HibernateSessionController;
+import org.example.model.House;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Imports houses from an NDJSON or CSV stream. Rows are validated as they are read and inserted in chunks, one
+ * multi-row INSERT ... RETURNING and one transaction per chunk, so memory stays bounded by the chunk size whatever
+ * the size of the input. Houses are inserted as they are read, a failed row does not stop the import.
+ * <p>
+ * A house whose address exists already is reported and skipped (ON CONFLICT DO NOTHING). When a chunk fails for
+ * another reason its rows are inserted one by one, to report the failing rows and keep the others.
+ */
+@Component
+public class HouseImporter {
+    public record RowError(int line, String message) {
+    }
+
+    public record Result(long rows, long imported, long failed, List<RowError> errors, boolean errorsTruncated) {
+    }
+
+    private static final int CHUNK_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final BigDecimal MAX_PRICE = new BigDecimal("999999.99"); // NUMERIC(8,2)
+
+    private static final String INSERT_PREFIX = """
+            INSERT INTO house (photo_link, address, parking_spaces_count, price_per_day, district, comfort_class,
+                               description, discount_price, map_location, addition_date)
+            VALUES\s""";
+
+    private static final String INSERT_ROW =
+            "(:photoLink%1$d, :address%1$d, :parkingSpacesCount%1$d, :pricePerDay%1$d, :district%1$d, "
+                    + ":comfortClass%1$d, :description%1$d, :discountPrice%1$d, "
+                    + "CAST(:mapLocation%1$d AS numeric[]), :additionDate%1$d)";
+
+    private static final String INSERT_SUFFIX = """
+             ON CONFLICT (address) DO NOTHING
+            RETURNING *""";
+
+    private static final class Progress {
+        private long rows;
+        private long imported;
+        private long failed;
+        private final List<RowError> errors = new ArrayList<>();
+
+        private void failed(int line, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RowError(line, message));
+            }
+        }
+    }
+
+    @Autowired
+    private HibernateSessionController sessionController;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // onImported gets the houses of every committed chunk
+    public Result importHouses(HouseFormat format, InputStream input, Consumer<List<House>> onImported)
+            throws IOException {
+        var reader = format.reader(objectMapper, input);
+        var progress = new Progress();
+        List<HouseFormat.Row> chunk = new ArrayList<>(CHUNK_SIZE);
+
+        for (var row = reader.next(); row != null; row = reader.next()) {
+            progress.rows++;
+            var error = row.error() != null ? row.error() : validate(row.house());
+            if (error != null) {
+                progress.failed(row.line(), error);
+                continue;
+            }
+
+            chunk.add(row);
+            if (chunk.size() == CHUNK_SIZE) {
+                insertChunk(chunk, progress, onImported);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            insertChunk(chunk, progress, onImported);
+        }
+
+        return new Result(progress.rows, progress.imported, progress.failed, progress.errors,
+                progress.failed > progress.errors.size());
+    }
+
+    // the checks of HouseController.createHouse plus the column limits
+    private static String validate(House house) {
+        if (house.getAddress() == null || house.getPricePerDay() == null || house.getDistrict() == null
+                || house.getComfortClass() == null || house.getMapLocation() == null) {
+            return "Row must contain 'address', 'pricePerDay', 'district', 'comfortClass' and 'mapLocation'";
+        }
+        if (house.getAddress().length() > 150 || house.getDistrict().length() > 100
+                || house.getComfortClass().length() > 100) {
+            return "'address' must be at most 150 characters, 'district' and 'comfortClass' at most 100";
+        }
+        if (!isPrice(house.getPricePerDay()) || (house.getDiscountPrice() != null && !isPrice(house.getDiscountPrice()))) {
+            return "'pricePerDay' and 'discountPrice' must be between 0 and " + MAX_PRICE;
+        }
+        var location = house.getMapLocation();
+        if (location.length != 2 || location[0] == null || location[1] == null
+                || location[0].abs().compareTo(BigDecimal.valueOf(90)) > 0
+                || location[1].abs().compareTo(BigDecimal.valueOf(180)) > 0) {
+            return "'mapLocation' must be [latitude, longitude]";
+        }
+        if (house.getParkingSpacesCount() != null && house.getParkingSpacesCount() < 0) {
+            return "'parkingSpacesCount' must not be negative";
+        }
+        return null;
+    }
+
+    private static boolean isPrice(BigDecimal price) {
+        return price.signum() >= 0 && price.compareTo(MAX_PRICE) <= 0;
+    }
+
+    private void insertChunk(List<HouseFormat.Row> chunk, Progress progress, Consumer<List<House>> onImported) {
+        // the second row with an address would be skipped by ON CONFLICT as well, but could not be told apart
+        Map<String, HouseFormat.Row> byAddress = new LinkedHashMap<>();
+        for (var row : chunk) {
+            if (byAddress.putIfAbsent(row.house().getAddress(), row) != null) {
+                progress.failed(row.line(), "Address repeats line " + byAddress.get(row.house().getAddress()).line());
+            }
+        }
+        var rows = new ArrayList<>(byAddress.values());
+
+        try {
+            record(rows, insert(rows), progress, onImported);
+        } catch (Exception e) {
+            for (var row : rows) {
+                try {
+                    record(List.of(row), insert(List.of(row)), progress, onImported);
+                } catch (Exception rowException) {
+                    progress.failed(row.line(), rootMessage(rowException));
+                }
+            }
+        }
+    }
+
+    private List<House> insert(List<HouseFormat.Row> rows) {
+        var sql = new StringJoiner(", ", INSERT_PREFIX, INSERT_SUFFIX);
+        for (int i = 0; i < rows.size(); i++) {
+            sql.add(INSERT_ROW.formatted(i));
+        }
+
+        var now = Timestamp.valueOf(LocalDateTime.now(ZoneId.of("Europe/Moscow"))); // as createHouse
+        try (var session = sessionController.openSession()) {
+            session.beginTransaction();
+            NativeQuery<House> query = session.createNativeQuery(sql.toString(), House.class);
+            for (int i = 0; i < rows.size(); i++) {
+                var house = rows.get(i).house();
+                query.setParameter("photoLink" + i, house.getPhotoLink(), StandardBasicTypes.STRING)
+                        .setParameter("address" + i, house.getAddress())
+                        .setParameter("parkingSpacesCount" + i,
+                                house.getParkingSpacesCount() == null ? 0 : house.getParkingSpacesCount())
+                        .setParameter("pricePerDay" + i, house.getPricePerDay())
+                        .setParameter("district" + i, house.getDistrict())
+                        .setParameter("comfortClass" + i, house.getComfortClass())
+                        .setParameter("description" + i, house.getDescription(), StandardBasicTypes.STRING)
+                        .setParameter("discountPrice" + i, house.getDiscountPrice(), StandardBasicTypes.BIG_DECIMAL)
+                        .setParameter("mapLocation" + i, Arrays.stream(house.getMapLocation())
+                                .map(BigDecimal::toPlainString)
+                                .toArray(String[]::new))
+                        .setParameter("additionDate" + i,
+                                house.getAdditionDate() == null ? now : house.getAdditionDate());
+            }
+            var inserted = query.list();
+            session.getTransaction().commit();
+            // a native statement run as a query does not invalidate cached House queries
+            session.getSessionFactory().getCache().evictQueryRegions();
+            return inserted;
+        }
+    }
+
+    // rows missing from the result hit an existing address
+    private static void record(List<HouseFormat.Row> rows, List<House> inserted, Progress progress,
+                               Consumer<List<House>> onImported) {
+        Set<String> insertedAddresses = new HashSet<>();
+        inserted.forEach(house -> insertedAddresses.add(house.getAddress()));
+        for (var row : rows) {
+            if (!insertedAddresses.contains(row.house().getAddress())) {
+                progress.failed(row.line(), "House with this address already exists");
+            }
+        }
+
+        progress.imported += inserted.size();
+        if (!inserted.isEmpty()) {
+            onImported.accept(inserted);
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        while (e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e.getMessage();
+    }
+}
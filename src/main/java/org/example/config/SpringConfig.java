@@ -1,14 +1,39 @@
 package org.example.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.example.hibernateController.HibernateSessionController;
+import org.example.metrics.EndpointTimingInterceptor;
+import org.example.metrics.HotPathMetrics;
+import org.example.response.JsonSupport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 @SuppressWarnings("unused")
-public class SpringConfig {
+public class SpringConfig implements WebMvcConfigurer {
+    @Autowired
+    private HotPathMetrics metrics;
+
+    @Bean(destroyMethod = "closeSessionFactory")
+    public HibernateSessionController hibernateSessionController(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads, HotPathMetrics metrics) {
+        return new HibernateSessionController(virtualThreads, metrics);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new EndpointTimingInterceptor(metrics)).addPathPatterns("/api/**");
+    }
+
+    // replaces Spring Boot's auto-configured mapper so controllers and services share JsonSupport.MAPPER
     @Bean
-    public HibernateSessionController hibernateSessionController() {
-        return new HibernateSessionController();
+    @Primary
+    public ObjectMapper objectMapper() {
+        return JsonSupport.MAPPER;
     }
 }
@@ -2,12 +2,15 @@ package org.example.controller;
 
 import org.example.ExceptionHandler.ExceptionHandler;
 import org.example.model.Client;
+import org.example.request.IdRequest;
+import org.example.request.LoginRequest;
 import org.example.service.ClientService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/clients")
@@ -18,8 +21,18 @@ public class ClientController {
     private ClientService clientService;
 
     @RequestMapping(value = "/all", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> getAllClients() {
-        return clientService.getAllClients();
+    public ResponseEntity<?> getAllClients(@RequestParam(value = "after-id", required = false) Long afterId,
+                                           @RequestParam(value = "limit", required = false) Integer limit) {
+        if (limit != null && limit <= 0) {
+            return ExceptionHandler.handleUserException("'limit' must be positive", HttpStatus.BAD_REQUEST);
+        }
+
+        return clientService.getAllClients(afterId, limit);
+    }
+
+    @RequestMapping(value = "/all/stream", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllClients() {
+        return clientService.streamAllClients();
     }
 
     @RequestMapping(value = "/{id}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -28,13 +41,13 @@ public class ClientController {
     }
 
     @RequestMapping(value = "/login", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> getClientByLoginAndPassword(@RequestBody String loginDataJSON) {
-        if (!loginDataJSON.contains("login") || !loginDataJSON.contains("password")) {
+    public ResponseEntity<?> getClientByLoginAndPassword(@RequestBody LoginRequest loginRequest) {
+        if (!loginRequest.isComplete()) {
             return ExceptionHandler.handleUserException("Request must contains 'login' and 'password'",
                     HttpStatus.BAD_REQUEST);
         }
 
-        return clientService.getClientByLoginAndPassword(loginDataJSON);
+        return clientService.getClientByLoginAndPassword(loginRequest);
     }
 
     @RequestMapping(value = "/create", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -56,13 +69,23 @@ public class ClientController {
     }
 
     @RequestMapping(value = "/hesoyam", method = RequestMethod.PUT, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> getMoneyToClient(@RequestBody String idClientJSON) {
-        if (!idClientJSON.contains("id")) {
+    public ResponseEntity<?> getMoneyToClient(@RequestBody IdRequest idRequest) {
+        if (idRequest.id() == null) {
+            return ExceptionHandler.handleUserException("Request must contains 'id'",
+                    HttpStatus.BAD_REQUEST);
+        }
+
+        return clientService.getMoneyToClient(idRequest.id());
+    }
+
+    @RequestMapping(value = "/rebuild-balance", method = RequestMethod.PUT, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> rebuildBalance(@RequestBody IdRequest idRequest) {
+        if (idRequest.id() == null) {
             return ExceptionHandler.handleUserException("Request must contains 'id'",
                     HttpStatus.BAD_REQUEST);
         }
 
-        return clientService.getMoneyToClient(idClientJSON);
+        return clientService.rebuildBalance(idRequest.id());
     }
 
     @RequestMapping(value = "/edit", method = RequestMethod.PUT, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -78,12 +101,12 @@ public class ClientController {
     }
 
     @RequestMapping(value = "/delete", method = RequestMethod.DELETE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> deleteClient(@RequestBody String idClientJSON) {
-        if (!idClientJSON.contains("id")) {
+    public ResponseEntity<?> deleteClient(@RequestBody IdRequest idRequest) {
+        if (idRequest.id() == null) {
             return ExceptionHandler.handleUserException("Request must contains 'id'",
                     HttpStatus.BAD_REQUEST);
         }
 
-        return clientService.deleteClient(idClientJSON);
+        return clientService.deleteClient(idRequest.id());
     }
 }
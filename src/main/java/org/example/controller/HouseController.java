@@ -1,14 +1,25 @@
 package org.example.controller;
 
 import org.example.ExceptionHandler.ExceptionHandler;
+import org.example.bulk.HouseFormat;
 import org.example.model.House;
+import org.example.query.FreeHouseCriteria;
+import org.example.request.IdRequest;
 import org.example.service.HouseService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Stream;
@@ -18,18 +29,183 @@ import java.util.stream.Stream;
 @CrossOrigin(origins = "*")
 @SuppressWarnings("unused")
 public class HouseController {
+    private static final int MAX_CALENDAR_HOUSES = 1000;
+    private static final int MAX_CALENDAR_DAYS = 366;
+
     @Autowired
     private HouseService houseService;
 
     @RequestMapping(value = "/all", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> getAllHouses() {
-        return houseService.getAllHouses();
+    public ResponseEntity<?> getAllHouses(@RequestParam(value = "after-id", required = false) Long afterId,
+                                          @RequestParam(value = "limit", required = false) Integer limit) {
+        if (limit != null && limit <= 0) {
+            return ExceptionHandler.handleUserException("'limit' must be positive", HttpStatus.BAD_REQUEST);
+        }
+
+        return houseService.getAllHouses(afterId, limit);
+    }
+
+    @RequestMapping(value = "/all/stream", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllHouses() {
+        return houseService.streamAllHouses();
+    }
+
+    // exports are streamed from a database cursor, in the formats /import reads
+    @RequestMapping(value = "/export/ndjson", method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> exportHousesAsNdjson() {
+        return houseService.exportHouses(HouseFormat.NDJSON);
+    }
+
+    @RequestMapping(value = "/export/csv", method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> exportHousesAsCsv() {
+        return houseService.exportHouses(HouseFormat.CSV);
+    }
+
+    // an NDJSON (application/x-ndjson) or CSV (text/csv) body, read as it arrives
+    @RequestMapping(value = "/import", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> importHouses(@RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+                                          InputStream body) {
+        var houseFormat = HouseFormat.of(contentType);
+        if (houseFormat == null) {
+            return ExceptionHandler.handleUserException("Content-Type must be 'application/x-ndjson' or 'text/csv'",
+                    HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+        }
+
+        return houseService.importHouses(houseFormat, body);
     }
 
     @RequestMapping(value = "/free", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> getFreeHousesByParams(@RequestParam(value = "comfort-class", required = false) String comfortClass,
-                                                   @RequestParam(value = "districts", required = false) List<String> districts) {
-        return houseService.getFreeHousesByParams(comfortClass, districts);
+                                                   @RequestParam(value = "districts", required = false) List<String> districts,
+                                                   @RequestParam(value = "min-price", required = false) BigDecimal minPrice,
+                                                   @RequestParam(value = "max-price", required = false) BigDecimal maxPrice,
+                                                   @RequestParam(value = "min-parking-spaces", required = false) Integer minParkingSpaces,
+                                                   @RequestParam(value = "with-discount", required = false) Boolean withDiscount) {
+        var criteria = FreeHouseCriteria.builder()
+                .comfortClass(comfortClass)
+                .districts(districts)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .minParkingSpaces(minParkingSpaces)
+                .withDiscount(withDiscount)
+                .build();
+
+        return houseService.getFreeHousesByParams(criteria);
+    }
+
+    // houses without a booking overlapping [from, to), same filters as /free
+    @RequestMapping(value = "/free/range", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getFreeHousesBetween(@RequestParam(value = "from") String from,
+                                                  @RequestParam(value = "to") String to,
+                                                  @RequestParam(value = "comfort-class", required = false) String comfortClass,
+                                                  @RequestParam(value = "districts", required = false) List<String> districts,
+                                                  @RequestParam(value = "min-price", required = false) BigDecimal minPrice,
+                                                  @RequestParam(value = "max-price", required = false) BigDecimal maxPrice,
+                                                  @RequestParam(value = "min-parking-spaces", required = false) Integer minParkingSpaces,
+                                                  @RequestParam(value = "with-discount", required = false) Boolean withDiscount) {
+        var range = parseRange(from, to);
+        if (range == null) {
+            return rangeError();
+        }
+
+        var criteria = FreeHouseCriteria.builder()
+                .comfortClass(comfortClass)
+                .districts(districts)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .minParkingSpaces(minParkingSpaces)
+                .withDiscount(withDiscount)
+                .build();
+
+        return houseService.getFreeHousesBetween(criteria, range[0], range[1]);
+    }
+
+    @RequestMapping(value = "/availability", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getHouseAvailability(@RequestParam(value = "id") Long id,
+                                                  @RequestParam(value = "from") String from,
+                                                  @RequestParam(value = "to") String to) {
+        var range = parseRange(from, to);
+        if (range == null) {
+            return rangeError();
+        }
+
+        return houseService.getHouseAvailability(id, range[0], range[1]);
+    }
+
+    // booked days of many houses for a calendar view, [from, to) in days
+    @RequestMapping(value = "/calendar", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getHouseCalendars(@RequestParam(value = "ids") List<Long> ids,
+                                               @RequestParam(value = "from") String from,
+                                               @RequestParam(value = "to") String to) {
+        if (ids.isEmpty() || ids.size() > MAX_CALENDAR_HOUSES || ids.contains(null)) {
+            return ExceptionHandler.handleUserException(
+                    "'ids' must contain 1 to " + MAX_CALENDAR_HOUSES + " house ids", HttpStatus.BAD_REQUEST);
+        }
+
+        LocalDate fromDate;
+        LocalDate toDate;
+        try {
+            fromDate = LocalDate.parse(from);
+            toDate = LocalDate.parse(to);
+        } catch (DateTimeParseException e) {
+            fromDate = null;
+            toDate = null;
+        }
+        if (fromDate == null || !fromDate.isBefore(toDate) || fromDate.plusDays(MAX_CALENDAR_DAYS).isBefore(toDate)) {
+            return ExceptionHandler.handleUserException(
+                    "'from' and 'to' must be dates (yyyy-MM-dd), 'from' before 'to' and at most " + MAX_CALENDAR_DAYS
+                            + " days apart", HttpStatus.BAD_REQUEST);
+        }
+
+        return houseService.getHouseCalendars(ids, fromDate, toDate);
+    }
+
+    // yyyy-MM-dd (start of the day) or yyyy-MM-ddTHH:mm[:ss[.SSS]]; null when malformed or empty
+    private static Timestamp[] parseRange(String from, String to) {
+        try {
+            var range = new Timestamp[]{parseDate(from), parseDate(to)};
+            return range[0].before(range[1]) ? range : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static Timestamp parseDate(String value) {
+        return Timestamp.valueOf(value.length() == 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value));
+    }
+
+    private static ResponseEntity<?> rangeError() {
+        return ExceptionHandler.handleUserException(
+                "'from' and 'to' must be dates (yyyy-MM-dd) or date-times (yyyy-MM-ddTHH:mm:ss) and 'from' must be before 'to'",
+                HttpStatus.BAD_REQUEST);
+    }
+
+    @RequestMapping(value = "/near", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getNearHouses(@RequestParam(value = "lat") Double lat,
+                                           @RequestParam(value = "lon") Double lon,
+                                           @RequestParam(value = "radius-km", required = false) Double radiusKm,
+                                           @RequestParam(value = "k", required = false) Integer count) {
+        if (radiusKm == null && count == null) {
+            return ExceptionHandler.handleUserException("Request must contains 'radius-km' or 'k'", HttpStatus.BAD_REQUEST);
+        }
+        if ((radiusKm != null && radiusKm <= 0) || (count != null && count <= 0)) {
+            return ExceptionHandler.handleUserException("'radius-km' and 'k' must be positive", HttpStatus.BAD_REQUEST);
+        }
+
+        return houseService.getNearHouses(lat, lon, radiusKm, count);
+    }
+
+    @RequestMapping(value = "/within", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getHousesInBox(@RequestParam(value = "min-lat") Double minLat,
+                                            @RequestParam(value = "min-lon") Double minLon,
+                                            @RequestParam(value = "max-lat") Double maxLat,
+                                            @RequestParam(value = "max-lon") Double maxLon) {
+        if (minLat > maxLat || minLon > maxLon) {
+            return ExceptionHandler.handleUserException("'min-lat' and 'min-lon' must not exceed 'max-lat' and 'max-lon'",
+                    HttpStatus.BAD_REQUEST);
+        }
+
+        return houseService.getHousesInBox(minLat, minLon, maxLat, maxLon);
     }
 
     public ResponseEntity<?> getHouseById(@PathVariable("id") Long id) {
@@ -63,11 +239,11 @@ public class HouseController {
     }
 
     @RequestMapping(value = "/delete", method = RequestMethod.DELETE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> deleteHouse(@RequestBody String idHouseJSON) {
-        if (!idHouseJSON.contains("id")) {
+    public ResponseEntity<?> deleteHouse(@RequestBody IdRequest idRequest) {
+        if (idRequest.id() == null) {
             return ExceptionHandler.handleUserException("Request must contains 'id'", HttpStatus.BAD_REQUEST);
         }
 
-        return houseService.deleteHouse(idHouseJSON);
+        return houseService.deleteHouse(idRequest.id());
     }
 }
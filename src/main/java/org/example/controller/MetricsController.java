@@ -0,0 +1,49 @@
+package org.example.controller;
+
+import org.example.hibernateController.HibernateSessionController;
+import org.example.metrics.HotPathMetrics;
+import org.example.metrics.QueryStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/metrics")
+@CrossOrigin(origins = "*")
+@SuppressWarnings("unused")
+public class MetricsController {
+    private static final MediaType PROMETHEUS_TEXT = MediaType.parseMediaType("text/plain;version=0.0.4;charset=utf-8");
+
+    @Autowired
+    private HibernateSessionController sessionController;
+
+    @Autowired
+    private HotPathMetrics hotPathMetrics;
+
+    @Autowired
+    private QueryStatistics queryStatistics;
+
+    @RequestMapping(value = "/pool", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getPoolMetrics() {
+        return new ResponseEntity<>(sessionController.getPoolMetrics(), HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/cache", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getCacheMetrics() {
+        return new ResponseEntity<>(sessionController.getCacheMetrics(), HttpStatus.OK);
+    }
+
+    // statements by endpoint and SQL shape, and the requests over the query budget
+    @RequestMapping(value = "/queries", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getQueryStatistics() {
+        return new ResponseEntity<>(queryStatistics.report(), HttpStatus.OK);
+    }
+
+    // endpoint and service latencies and Hibernate counters in the Prometheus text format
+    @RequestMapping(value = "/prometheus", method = RequestMethod.GET)
+    public ResponseEntity<String> getPrometheusMetrics() {
+        return ResponseEntity.ok().contentType(PROMETHEUS_TEXT).body(hotPathMetrics.scrape());
+    }
+}
@@ -2,12 +2,15 @@ package org.example.controller;
 
 import org.example.ExceptionHandler.ExceptionHandler;
 import org.example.model.RentedHouse;
+import org.example.request.CreateDealsRequest;
+import org.example.request.ExtendDealRequest;
 import org.example.service.RentedHouseService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Objects;
 import java.util.stream.Stream;
@@ -17,17 +20,39 @@ import java.util.stream.Stream;
 @CrossOrigin(origins = "*")
 @SuppressWarnings("unused")
 public class RentedHouseController {
+    private static final int MAX_BATCH_DEALS = 500;
+
     @Autowired
     private RentedHouseService rentedHouseService;
 
     @RequestMapping(value = "/rented", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> getRentedHousesByPeriod(@RequestParam(value = "period", required = false) String period,
-                                                     @RequestParam(value = "start-period-date", required = false) String startPeriodDate) {
-        if (!Stream.of("day", "month", "year").anyMatch(period::contains)) {
+                                                     @RequestParam(value = "start-period-date", required = false) String startPeriodDate,
+                                                     @RequestParam(value = "after-id", required = false) Long afterId,
+                                                     @RequestParam(value = "limit", required = false) Integer limit) {
+        if (period != null && !Stream.of("day", "month", "year").anyMatch(period::contains)) {
+            return ExceptionHandler.handleUserException("Request must contains 'day', 'month' or 'year'", HttpStatus.BAD_REQUEST);
+        }
+        if (limit != null && limit <= 0) {
+            return ExceptionHandler.handleUserException("'limit' must be positive", HttpStatus.BAD_REQUEST);
+        }
+
+        return rentedHouseService.getRentedHousesByPeriod(period, startPeriodDate, afterId, limit);
+    }
+
+    @RequestMapping(value = "/rented/rollup", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getRentalRollup(@RequestParam(value = "period", required = false) String period,
+                                             @RequestParam(value = "date", required = false) String date) {
+        if (Stream.of("day", "month", "year").noneMatch(value -> value.equals(period))) {
             return ExceptionHandler.handleUserException("Request must contains 'day', 'month' or 'year'", HttpStatus.BAD_REQUEST);
         }
 
-        return rentedHouseService.getRentedHousesByPeriod(period, startPeriodDate);
+        return rentedHouseService.getRentalRollup(period, date);
+    }
+
+    @RequestMapping(value = "/rented/stream", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllRentedHouses() {
+        return rentedHouseService.streamAllRentedHouses();
     }
 
     @RequestMapping(value = "/rented-user-info/{id}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -52,6 +77,27 @@ public class RentedHouseController {
         return rentedHouseService.createDeal(newDeal);
     }
 
+    // many deals in one transaction, all or none unless 'partial' is true; the result of every deal is reported
+    @RequestMapping(value = "/create-deals", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> createDeals(@RequestBody CreateDealsRequest request) {
+        var deals = request.deals();
+        if (deals == null || deals.isEmpty() || deals.size() > MAX_BATCH_DEALS) {
+            return ExceptionHandler.handleUserException("'deals' must contain 1 to " + MAX_BATCH_DEALS + " deals",
+                    HttpStatus.BAD_REQUEST);
+        }
+        for (int i = 0; i < deals.size(); i++) {
+            var deal = deals.get(i);
+            if (deal == null || Stream.of(deal.getIdHouse(), deal.getIdClient(), deal.getRentalDuration(),
+                    deal.getTotalAmount()).anyMatch(Objects::isNull)) {
+                return ExceptionHandler.handleUserException("Deal " + i
+                                + " must contains 'idHouse', 'idClient', 'rentalDuration' and 'totalAmount'",
+                        HttpStatus.BAD_REQUEST);
+            }
+        }
+
+        return rentedHouseService.createDeals(deals, request.isPartial());
+    }
+
     @RequestMapping(value = "/edit-deal", method = RequestMethod.PUT, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> editDeal(@RequestBody RentedHouse editedDeal) {
         if (Stream.of(editedDeal.getIdHouse(), editedDeal.getIdClient(), editedDeal.getRentalDuration(),
@@ -66,14 +112,13 @@ public class RentedHouseController {
     }
 
     @RequestMapping(value = "/extend-deal", method = RequestMethod.PATCH, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> extendDeal(@RequestBody String extendInfoJSON) {
-        if (!extendInfoJSON.contains("idRentedHouse") || !extendInfoJSON.contains("additionalDays")
-                || !extendInfoJSON.contains("additionalPrice")) {
+    public ResponseEntity<?> extendDeal(@RequestBody ExtendDealRequest extendRequest) {
+        if (!extendRequest.isComplete()) {
             return ExceptionHandler.handleUserException(
                     "Request must contains 'idRentedHouse', 'additionalDays', 'additionalPrice'",
                     HttpStatus.BAD_REQUEST);
         }
 
-        return rentedHouseService.extendDeal(extendInfoJSON);
+        return rentedHouseService.extendDeal(extendRequest);
     }
 }
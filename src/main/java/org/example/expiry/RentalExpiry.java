@@ -0,0 +1,124 @@
+package org.example.expiry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.hibernateController.HibernateSessionController;
+import org.example.index.HouseAvailabilityIndex;
+import org.example.model.RentedHouse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clears RentedHouse.active when a rental ends, so reads test an indexed flag instead of comparing end dates with
+ * the current time.
+ * <p>
+ * Every active deal has an entry in a delay queue (a priority queue by end date). One thread takes the entries as
+ * they fall due and deactivates them in batches; the update re-checks the end date, so the entry of a deal that was
+ * extended meanwhile does nothing and the deal's new entry fires later. Deals that ended while the application was
+ * down are due at startup and deactivated first.
+ */
+@Component
+public class RentalExpiry {
+    private record Expiry(Long dealId, long end) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(end - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(end, ((Expiry) other).end);
+        }
+    }
+
+    private static final Logger LOG = LogManager.getLogger(RentalExpiry.class);
+    private static final int BATCH_SIZE = 500;
+    private static final long RETRY_DELAY_MILLIS = 5000;
+
+    private static final String EXPIRE_QUERY = """
+            UPDATE rented_house SET active = false
+            WHERE id IN (:ids) AND active AND rental_end_date <= :now
+            RETURNING id""";
+
+    @Autowired
+    private HibernateSessionController sessionController;
+
+    // created before this bean, so it has loaded the active deals before the first expiry
+    @Autowired
+    private HouseAvailabilityIndex availabilityIndex;
+
+    private final DelayQueue<Expiry> expiries = new DelayQueue<>();
+    private Thread worker;
+
+    @PostConstruct
+    public void start() {
+        try (var session = sessionController.openSession()) {
+            session.createQuery("select id, rentalEndDate from Rented_House where active", Object[].class)
+                    .list()
+                    .forEach(deal -> expiries.add(new Expiry((Long) deal[0], ((Timestamp) deal[1]).getTime())));
+        } catch (Exception e) {
+            LOG.error("Could not load active deals, they stay active until changed", e);
+        }
+
+        worker = Thread.ofPlatform().name("rental-expiry").daemon().start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() {
+        worker.interrupt();
+    }
+
+    // called after a deal was created, edited or extended
+    public void schedule(RentedHouse deal) {
+        if (Boolean.TRUE.equals(deal.getActive())) {
+            expiries.add(new Expiry(deal.getId(), deal.getRentalEndDate().getTime()));
+        }
+    }
+
+    private void run() {
+        List<Expiry> due = new ArrayList<>(BATCH_SIZE);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                due.add(expiries.take());
+                expiries.drainTo(due, BATCH_SIZE - 1); // only takes entries that are due as well
+                expire(due);
+                due.clear();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                LOG.error("Could not deactivate {} ended deals, retrying", due.size(), e);
+                expiries.addAll(due);
+                due.clear();
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void expire(List<Expiry> due) {
+        long now = System.currentTimeMillis();
+        List<Long> expired;
+        try (var session = sessionController.openSession()) {
+            session.beginTransaction();
+            expired = session.createNativeQuery(EXPIRE_QUERY, Long.class)
+                    .setParameter("ids", due.stream().map(Expiry::dealId).toList())
+                    .setParameter("now", new Timestamp(now))
+                    .list();
+            session.getTransaction().commit();
+        }
+
+        expired.forEach(dealId -> availabilityIndex.dealEnded(dealId, now));
+    }
+}
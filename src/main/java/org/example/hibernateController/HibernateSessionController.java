@@ -1,16 +1,91 @@
 package org.example.hibernateController;
 
+import com.zaxxer.hikari.HikariDataSource;
+import org.example.metrics.HotPathMetrics;
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.HibernateException;
 import org.hibernate.Session;
+import org.hibernate.SessionEventListener;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEventListener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @SuppressWarnings("unused")
 public class HibernateSessionController {
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final long PERMIT_TIMEOUT_SECONDS = 30;
+
+    @FunctionalInterface
+    public interface ResultStreamConsumer<T> {
+        void accept(Stream<T> results) throws IOException;
+    }
+
+    public record CacheRegionMetrics(String region, long size, long hits, long misses, double hitRate,
+                                     long evictions) {
+    }
+
+    private class PermitReleasingListener extends BaseSessionEventListener {
+        private boolean released;
+
+        @Override
+        public void end() { // session closed
+            if (!released) {
+                released = true;
+                sessionPermits.release();
+            }
+        }
+    }
+
     private final SessionFactory sessionFactory;
+    private final HikariDataSource dataSource;
+    // caps the sessions open at a time to the pool size, null when unlimited
+    private final Semaphore sessionPermits;
+    // null when not instrumented
+    private final HotPathMetrics metrics;
 
     public HibernateSessionController() {
+        this(false, null);
+    }
+
+    /**
+     * @param limitConcurrency queue session openers in front of the pool. With virtual threads a request no longer
+     *                         costs a scarce worker thread, so this is what keeps thousands of concurrent requests
+     *                         from timing out on the pool or piling onto PostgreSQL.
+     */
+    public HibernateSessionController(boolean limitConcurrency, HotPathMetrics metrics) {
         try {
-            sessionFactory = new Configuration().configure().buildSessionFactory();
+            var configuration = new Configuration().configure();
+
+            // values passed with -Dhibernate.* override hibernate.cfg.xml
+            System.getProperties().stringPropertyNames().stream()
+                    .filter(name -> name.startsWith("hibernate."))
+                    .forEach(name -> configuration.setProperty(name, System.getProperty(name)));
+
+            sessionFactory = configuration.buildSessionFactory();
+            dataSource = sessionFactory.unwrap(SessionFactoryImplementor.class).getServiceRegistry()
+                    .requireService(ConnectionProvider.class).unwrap(HikariDataSource.class);
+            sessionPermits = limitConcurrency ? new Semaphore(dataSource.getMaximumPoolSize(), true) : null;
+
+            this.metrics = metrics;
+            if (metrics != null) {
+                sessionFactory.unwrap(SessionFactoryImplementor.class).getServiceRegistry()
+                        .requireService(EventListenerRegistry.class)
+                        .appendListeners(EventType.POST_LOAD, (PostLoadEventListener) event -> metrics.entityLoaded());
+            }
         } catch (Throwable ex) {
             System.err.println("Initial SessionFactory creation failed." + ex);
             throw new ExceptionInInitializerError(ex);
@@ -18,7 +93,90 @@ public class HibernateSessionController {
     }
 
     public Session openSession() {
-        return sessionFactory.openSession();
+        if (metrics != null) {
+            metrics.sessionOpened();
+        }
+        if (sessionPermits == null) {
+            return openSession(null);
+        }
+
+        acquirePermit();
+        try {
+            return openSession(new PermitReleasingListener());
+        } catch (RuntimeException e) {
+            sessionPermits.release();
+            throw e;
+        }
+    }
+
+    private Session openSession(SessionEventListener permitListener) {
+        if (permitListener == null && metrics == null) {
+            return sessionFactory.openSession();
+        }
+
+        List<SessionEventListener> listeners = new ArrayList<>(2);
+        if (permitListener != null) {
+            listeners.add(permitListener);
+        }
+        SessionMetricsListener metricsListener = metrics != null ? new SessionMetricsListener(metrics) : null;
+        if (metricsListener != null) {
+            listeners.add(metricsListener);
+        }
+
+        var builder = sessionFactory.withOptions().eventListeners(listeners.toArray(SessionEventListener[]::new));
+        if (metricsListener != null) {
+            builder.statementInspector(metricsListener);
+        }
+        var session = builder.openSession();
+        if (metricsListener != null) {
+            session.unwrap(SharedSessionContractImplementor.class).getTransactionCoordinator()
+                    .addObserver(metricsListener);
+        }
+
+        return session;
+    }
+
+    // the caller must close the session before releasing the permit (see streamQuery)
+    public StatelessSession openStatelessSession() {
+        return sessionFactory.openStatelessSession();
+    }
+
+    // runs the query on a cursor and hands rows to the consumer without keeping them in a persistence context
+    public <T> void streamQuery(String queryString, Class<T> resultType, ResultStreamConsumer<T> consumer)
+            throws IOException {
+        if (metrics != null) {
+            metrics.sessionOpened();
+        }
+        if (sessionPermits != null) {
+            acquirePermit();
+        }
+
+        try (var session = openStatelessSession()) {
+            // PostgreSQL only honours the fetch size inside a transaction
+            session.beginTransaction();
+            try (var results = session.createQuery(queryString, resultType)
+                    .setFetchSize(STREAM_FETCH_SIZE)
+                    .stream()) {
+                consumer.accept(results);
+            } finally {
+                session.getTransaction().rollback();
+            }
+        } finally {
+            if (sessionPermits != null) {
+                sessionPermits.release();
+            }
+        }
+    }
+
+    private void acquirePermit() {
+        try {
+            if (!sessionPermits.tryAcquire(PERMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new HibernateException("Timed out waiting for a database session");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HibernateException("Interrupted while waiting for a database session", e);
+        }
     }
 
     public void closeSession(Session session) {
@@ -27,6 +185,27 @@ public class HibernateSessionController {
         }
     }
 
+    public PoolMetricsTracker.PoolMetrics getPoolMetrics() {
+        var tracker = (PoolMetricsTracker) dataSource.getMetricsTrackerFactory();
+        return tracker.snapshot(dataSource.getHikariPoolMXBean(), dataSource.getMaximumPoolSize());
+    }
+
+    public List<CacheRegionMetrics> getCacheMetrics() {
+        var regionFactory = (JCacheRegionFactory) sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getCache().getRegionFactory();
+        var cacheManager = regionFactory.getCacheManager();
+
+        List<CacheRegionMetrics> metrics = new ArrayList<>();
+        for (var name : cacheManager.getCacheNames()) {
+            var cache = cacheManager.getCache(name).unwrap(com.github.benmanes.caffeine.cache.Cache.class);
+            var stats = cache.stats();
+            metrics.add(new CacheRegionMetrics(name, cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                    stats.hitRate(), stats.evictionCount()));
+        }
+
+        return metrics;
+    }
+
     public void closeSessionFactory() {
         if (sessionFactory != null) {
             sessionFactory.close();
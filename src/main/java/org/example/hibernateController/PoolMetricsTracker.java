@@ -0,0 +1,66 @@
+package org.example.hibernateController;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects connection wait/usage times reported by HikariCP.
+ * Live pool state (active, idle, pending) is taken from the pool MX bean at snapshot time.
+ */
+public class PoolMetricsTracker implements MetricsTrackerFactory, IMetricsTracker {
+    public record PoolMetrics(int active, int idle, int total, int pending, int maxPoolSize,
+                              long acquiredCount, double avgWaitMillis, double maxWaitMillis,
+                              double avgUsageMillis, long maxUsageMillis, long timeoutCount) {
+    }
+
+    private final LongAdder acquiredCount = new LongAdder();
+    private final LongAdder acquiredNanos = new LongAdder();
+    private final AtomicLong maxAcquiredNanos = new AtomicLong();
+    private final LongAdder usageCount = new LongAdder();
+    private final LongAdder usageMillis = new LongAdder();
+    private final AtomicLong maxUsageMillis = new AtomicLong();
+    private final LongAdder timeoutCount = new LongAdder();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return this;
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquiredCount.increment();
+        acquiredNanos.add(elapsedAcquiredNanos);
+        maxAcquiredNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usageCount.increment();
+        usageMillis.add(elapsedBorrowedMillis);
+        maxUsageMillis.accumulateAndGet(elapsedBorrowedMillis, Math::max);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeoutCount.increment();
+    }
+
+    public PoolMetrics snapshot(HikariPoolMXBean pool, int maxPoolSize) {
+        long acquired = acquiredCount.sum();
+        long used = usageCount.sum();
+        double nanosInMilli = TimeUnit.MILLISECONDS.toNanos(1);
+
+        return new PoolMetrics(pool.getActiveConnections(), pool.getIdleConnections(), pool.getTotalConnections(),
+                pool.getThreadsAwaitingConnection(), maxPoolSize, acquired,
+                acquired == 0 ? 0 : acquiredNanos.sum() / nanosInMilli / acquired,
+                maxAcquiredNanos.get() / nanosInMilli,
+                used == 0 ? 0 : (double) usageMillis.sum() / used,
+                maxUsageMillis.get(), timeoutCount.sum());
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.hibernateController;
+
+import org.example.metrics.HotPathMetrics;
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.resource.transaction.spi.TransactionObserver;
+
+/**
+ * Feeds one session's statements and commits into HotPathMetrics. The SQL of a statement is taken when Hibernate
+ * prepares it, the statement and its execution time are reported once it has run.
+ * <p>
+ * Commit time runs from the start of the flush that precedes the commit to the end of the JDBC commit. A flush
+ * counts as part of the commit when no statement ran after it outside of a flush.
+ */
+class SessionMetricsListener extends BaseSessionEventListener implements TransactionObserver, StatementInspector {
+    private final HotPathMetrics metrics;
+
+    private String sql; // of the last prepared statement
+    private long executeStart;
+    private boolean flushing;
+    private long flushStart;
+    private long commitStart;
+
+    SessionMetricsListener(HotPathMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        this.sql = sql;
+        return sql;
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executeStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        statementExecuted();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        executeStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        statementExecuted();
+    }
+
+    private void statementExecuted() {
+        metrics.statementExecuted(sql == null ? "" : sql, System.nanoTime() - executeStart);
+        if (!flushing) {
+            flushStart = 0; // the last flush was not the one of the commit
+        }
+    }
+
+    @Override
+    public void flushStart() {
+        flushing = true;
+        flushStart = System.nanoTime();
+    }
+
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections) {
+        flushing = false;
+    }
+
+    @Override
+    public void afterBegin() {
+        flushStart = 0;
+    }
+
+    @Override
+    public void beforeCompletion() { // runs after the flush of the commit
+        commitStart = flushStart != 0 ? flushStart : System.nanoTime();
+    }
+
+    @Override
+    public void afterCompletion(boolean successful, boolean delayed) {
+        if (successful && commitStart != 0) {
+            metrics.transactionCommitted(System.nanoTime() - commitStart);
+        }
+        commitStart = 0;
+        flushStart = 0;
+    }
+}
@@ -0,0 +1,208 @@
+package org.example.index;
+
+import jakarta.annotation.PostConstruct;
+import org.example.hibernateController.HibernateSessionController;
+import org.example.model.House;
+import org.example.model.RentedHouse;
+import org.example.query.FreeHouseCriteria;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+
+/**
+ * In-memory replacement for the FreeHouse view: the house catalog with secondary indexes on district and
+ * comfort class, and the booked ranges of every house.
+ * <p>
+ * A house is free (findFree) when it has no active deal. For a date range the booked ranges are kept in interval
+ * trees, per house and for all houses, so an overlap check costs O(log n + hits). Only active deals are tracked,
+ * RentalExpiry removes a deal when it ends, so ranges starting before now must be answered from the database.
+ * <p>
+ * The index is filled from the database on startup and kept current by the services on house and deal changes, so
+ * it only sees changes made through this instance.
+ */
+@Component
+public class HouseAvailabilityIndex {
+    // [start, end) of a deal in millis
+    private record Booking(Long dealId, Long houseId, long start, long end) {
+    }
+
+    // changed under the index's monitor, read without locking
+    private static final class Bookings {
+        private final IntervalTree<Booking> tree = new IntervalTree<>();
+
+        private void add(Booking booking) {
+            tree.add(booking.start(), booking.end(), booking.dealId(), booking);
+        }
+
+        private void remove(Booking booking) {
+            tree.remove(booking.start(), booking.dealId());
+        }
+
+        private List<Booking> overlapping(long from, long to) {
+            List<Booking> overlapping = new ArrayList<>();
+            tree.overlapping(from, to, overlapping::add);
+            return overlapping;
+        }
+    }
+
+    @Autowired
+    private HibernateSessionController sessionController;
+
+    private final Map<Long, House> houses = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> housesByDistrict = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> housesByComfortClass = new ConcurrentHashMap<>();
+
+    // active deals
+    private final Map<Long, Booking> bookingsByDeal = new ConcurrentHashMap<>();
+    private final Map<Long, Bookings> bookingsByHouse = new ConcurrentHashMap<>();
+    private final Bookings allBookings = new Bookings();
+
+    private volatile boolean loaded;
+
+    @PostConstruct
+    public void load() {
+        try (var session = sessionController.openSession()) {
+            var allHouses = session.createQuery("from House", House.class).list();
+            var deals = session.createQuery("from Rented_House where active", RentedHouse.class).list();
+
+            synchronized (this) {
+                allHouses.forEach(this::putHouse);
+                deals.forEach(this::putDeal);
+                loaded = true;
+            }
+        } catch (Exception e) {
+            loaded = false; // services fall back to the database
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public List<House> findFree(FreeHouseCriteria criteria) {
+        return find(criteria, id -> !bookingsByHouse.containsKey(id));
+    }
+
+    // houses without a booking overlapping [from, to)
+    public List<House> findFree(FreeHouseCriteria criteria, long from, long to) {
+        Set<Long> busyHouses = new HashSet<>();
+        allBookings.overlapping(from, to).forEach(booking -> busyHouses.add(booking.houseId()));
+        return find(criteria, id -> !busyHouses.contains(id));
+    }
+
+    private List<House> find(FreeHouseCriteria criteria, LongPredicate free) {
+        Collection<Long> candidates = houses.keySet();
+
+        if (!criteria.districts().isEmpty()) {
+            Set<Long> inDistricts = new HashSet<>();
+            for (var district : criteria.districts()) {
+                inDistricts.addAll(housesByDistrict.getOrDefault(district, Set.of()));
+            }
+            candidates = inDistricts;
+        }
+        if (criteria.comfortClass() != null) {
+            var inComfortClass = housesByComfortClass.getOrDefault(criteria.comfortClass(), Set.of());
+            candidates = candidates.stream().filter(inComfortClass::contains).toList();
+        }
+
+        List<House> freeHouses = new ArrayList<>();
+        for (var id : candidates) {
+            var house = houses.get(id);
+            if (house != null && free.test(id) && criteria.matches(house)) {
+                freeHouses.add(house);
+            }
+        }
+        freeHouses.sort(Comparator.comparing(House::getId));
+
+        return freeHouses;
+    }
+
+    public boolean isKnown(Long houseId) {
+        return houses.containsKey(houseId);
+    }
+
+    // no booking of the house overlaps [from, to), excludedDealId is ignored (the deal being changed) and may be null
+    public boolean isFree(Long houseId, long from, long to, Long excludedDealId) {
+        var bookings = bookingsByHouse.get(houseId);
+        return houses.containsKey(houseId) && (bookings == null || bookings.overlapping(from, to).stream()
+                .allMatch(booking -> booking.dealId().equals(excludedDealId)));
+    }
+
+    public synchronized void putHouse(House house) {
+        var previous = houses.put(house.getId(), house);
+        if (previous != null) {
+            removeFromIndex(housesByDistrict, previous.getDistrict(), previous.getId());
+            removeFromIndex(housesByComfortClass, previous.getComfortClass(), previous.getId());
+        }
+
+        housesByDistrict.computeIfAbsent(key(house.getDistrict()), k -> ConcurrentHashMap.newKeySet())
+                .add(house.getId());
+        housesByComfortClass.computeIfAbsent(key(house.getComfortClass()), k -> ConcurrentHashMap.newKeySet())
+                .add(house.getId());
+    }
+
+    public synchronized void removeHouse(Long houseId) {
+        var previous = houses.remove(houseId);
+        if (previous != null) {
+            removeFromIndex(housesByDistrict, previous.getDistrict(), houseId);
+            removeFromIndex(housesByComfortClass, previous.getComfortClass(), houseId);
+        }
+        var bookings = bookingsByHouse.remove(houseId);
+        if (bookings != null) {
+            bookings.tree.forEach(booking -> {
+                bookingsByDeal.remove(booking.dealId());
+                allBookings.remove(booking);
+            });
+        }
+    }
+
+    // called after a deal was created, edited or extended
+    public synchronized void putDeal(RentedHouse deal) {
+        var previous = bookingsByDeal.get(deal.getId());
+        if (previous != null) {
+            removeBooking(previous);
+        }
+
+        if (Boolean.TRUE.equals(deal.getActive())) {
+            var booking = new Booking(deal.getId(), deal.getIdHouse(), deal.getRentalStartDate().getTime(),
+                    deal.getRentalEndDate().getTime());
+            bookingsByDeal.put(booking.dealId(), booking);
+            bookingsByHouse.computeIfAbsent(booking.houseId(), k -> new Bookings()).add(booking);
+            allBookings.add(booking);
+        }
+    }
+
+    // called after RentalExpiry deactivated the deal; a booking extended past endedBy in the meantime stays
+    public synchronized void dealEnded(Long dealId, long endedBy) {
+        var booking = bookingsByDeal.get(dealId);
+        if (booking != null && booking.end() <= endedBy) {
+            removeBooking(booking);
+        }
+    }
+
+    private void removeBooking(Booking booking) {
+        bookingsByDeal.remove(booking.dealId());
+        allBookings.remove(booking);
+        var bookings = bookingsByHouse.get(booking.houseId());
+        if (bookings != null) {
+            bookings.remove(booking);
+            if (bookings.tree.isEmpty()) {
+                bookingsByHouse.remove(booking.houseId());
+            }
+        }
+    }
+
+    private static void removeFromIndex(Map<String, Set<Long>> index, String value, Long houseId) {
+        var ids = index.get(key(value));
+        if (ids != null) {
+            ids.remove(houseId);
+        }
+    }
+
+    private static String key(String value) {
+        return value == null ? "" : FreeHouseCriteria.normalize(value);
+    }
+}
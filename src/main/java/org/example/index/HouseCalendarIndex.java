@@ -0,0 +1,242 @@
+package org.example.index;
+
+import jakarta.annotation.PostConstruct;
+import org.example.hibernateController.HibernateSessionController;
+import org.example.model.RentedHouse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Booked days of every house, one calendar per house and year for the calendar views. A day is booked when a deal
+ * covers any part of it, days are those of the zone the API presents deal dates in. A calendar is kept as the runs
+ * of booked days while there are few of them and as a 366-bit bitmap otherwise, whichever is smaller, so a
+ * house-year takes at most 48 bytes.
+ * <p>
+ * Calendars are immutable and replaced on deal changes, readers do not lock. The deal ranges are kept as well: a
+ * changed deal may share its first or last day with a neighbouring deal, so the affected house-years are rebuilt
+ * from the ranges instead of clearing bits. Like HouseAvailabilityIndex it is filled on startup and only sees
+ * changes made through this instance.
+ */
+@Component
+public class HouseCalendarIndex {
+    public static final ZoneId ZONE = ZoneId.of("Europe/Moscow"); // as RentedHouse dates in JSON
+
+    // first and last booked day of a deal, in epoch days
+    private record Stay(Long dealId, Long houseId, long firstDay, long lastDay) {
+        private static Stay of(Long dealId, Long houseId, Timestamp start, Timestamp end) {
+            if (!end.after(start)) {
+                return null;
+            }
+            return new Stay(dealId, houseId, start.toInstant().atZone(ZONE).toLocalDate().toEpochDay(),
+                    lastBookedDay(end).toEpochDay());
+        }
+    }
+
+    private record HouseYear(Long houseId, int year) {
+    }
+
+    private static final class YearCalendar {
+        private static final int BITMAP_WORDS = 6; // 366 days
+        private static final int BITMAP_BYTES = BITMAP_WORDS * Long.BYTES;
+
+        private final short[] runs; // first and last day of year (0-based) of each run, null for the bitmap form
+        private final long[] bitmap;
+
+        private YearCalendar(short[] runs, long[] bitmap) {
+            this.runs = runs;
+            this.bitmap = bitmap;
+        }
+
+        // null when no day is booked
+        private static YearCalendar of(BitSet days) {
+            int runCount = 0;
+            for (int day = days.nextSetBit(0); day >= 0; day = days.nextSetBit(days.nextClearBit(day))) {
+                runCount++;
+            }
+            if (runCount == 0) {
+                return null;
+            }
+            if (runCount * 2 * Short.BYTES >= BITMAP_BYTES) {
+                return new YearCalendar(null, Arrays.copyOf(days.toLongArray(), BITMAP_WORDS));
+            }
+
+            var runs = new short[runCount * 2];
+            int i = 0;
+            for (int day = days.nextSetBit(0); day >= 0; day = days.nextSetBit(days.nextClearBit(day))) {
+                runs[i++] = (short) day;
+                runs[i++] = (short) (days.nextClearBit(day) - 1);
+            }
+            return new YearCalendar(runs, null);
+        }
+
+        // sets the booked days of [fromDay, toDay) in out, fromDay at offset
+        private void copyTo(BitSet out, int fromDay, int toDay, int offset) {
+            if (runs != null) {
+                for (int i = 0; i < runs.length; i += 2) {
+                    int first = Math.max(runs[i], fromDay);
+                    int last = Math.min(runs[i + 1], toDay - 1);
+                    if (first <= last) {
+                        out.set(offset + first - fromDay, offset + last - fromDay + 1);
+                    }
+                }
+                return;
+            }
+
+            var days = BitSet.valueOf(bitmap);
+            for (int day = days.nextSetBit(fromDay); day >= 0 && day < toDay; day = days.nextSetBit(day + 1)) {
+                out.set(offset + day - fromDay);
+            }
+        }
+    }
+
+    @Autowired
+    private HibernateSessionController sessionController;
+
+    private final Map<HouseYear, YearCalendar> calendars = new ConcurrentHashMap<>();
+    // guarded by this
+    private final Map<Long, Stay> staysByDeal = new HashMap<>();
+    private final Map<Long, Map<Long, Stay>> staysByHouse = new HashMap<>();
+
+    private volatile boolean loaded;
+
+    @PostConstruct
+    public void load() {
+        try (var session = sessionController.openSession()) {
+            var deals = session.createQuery("select id, idHouse, rentalStartDate, rentalEndDate from Rented_House",
+                    Object[].class).list();
+
+            synchronized (this) {
+                Set<HouseYear> changed = new HashSet<>();
+                for (var deal : deals) {
+                    var stay = Stay.of((Long) deal[0], (Long) deal[1], (Timestamp) deal[2], (Timestamp) deal[3]);
+                    if (stay != null) {
+                        addStay(stay);
+                        changed.addAll(houseYears(stay));
+                    }
+                }
+                changed.forEach(this::rebuild);
+                loaded = true;
+            }
+        } catch (Exception e) {
+            loaded = false; // services fall back to the database
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // bit i is set when day from + i is booked, for the days of [from, to)
+    public BitSet bookedDays(Long houseId, LocalDate from, LocalDate to) {
+        var booked = new BitSet();
+        int offset = 0;
+        for (var yearStart = from; yearStart.isBefore(to); ) {
+            var nextYear = LocalDate.of(yearStart.getYear() + 1, 1, 1);
+            var end = nextYear.isBefore(to) ? nextYear : to;
+
+            var calendar = calendars.get(new HouseYear(houseId, yearStart.getYear()));
+            if (calendar != null) {
+                calendar.copyTo(booked, yearStart.getDayOfYear() - 1,
+                        end.equals(nextYear) ? Year.of(yearStart.getYear()).length() : end.getDayOfYear() - 1, offset);
+            }
+
+            offset += (int) (end.toEpochDay() - yearStart.toEpochDay());
+            yearStart = end;
+        }
+        return booked;
+    }
+
+    // sets the days of [from, to) that the deal covers, bit 0 being from; for calendars read from the database
+    public static void markBooked(BitSet booked, LocalDate from, LocalDate to, Timestamp start, Timestamp end) {
+        var stay = Stay.of(null, null, start, end);
+        if (stay == null) {
+            return;
+        }
+
+        long first = Math.max(stay.firstDay(), from.toEpochDay());
+        long last = Math.min(stay.lastDay(), to.toEpochDay() - 1);
+        if (first <= last) {
+            booked.set((int) (first - from.toEpochDay()), (int) (last - from.toEpochDay() + 1));
+        }
+    }
+
+    // called after a deal was created, edited or extended
+    public synchronized void putDeal(RentedHouse deal) {
+        Set<HouseYear> changed = new HashSet<>();
+
+        var previous = staysByDeal.remove(deal.getId());
+        if (previous != null) {
+            var houseStays = staysByHouse.get(previous.houseId());
+            houseStays.remove(previous.dealId());
+            if (houseStays.isEmpty()) {
+                staysByHouse.remove(previous.houseId());
+            }
+            changed.addAll(houseYears(previous));
+        }
+
+        var stay = Stay.of(deal.getId(), deal.getIdHouse(), deal.getRentalStartDate(), deal.getRentalEndDate());
+        if (stay != null) {
+            addStay(stay);
+            changed.addAll(houseYears(stay));
+        }
+
+        changed.forEach(this::rebuild);
+    }
+
+    public synchronized void removeHouse(Long houseId) {
+        var houseStays = staysByHouse.remove(houseId);
+        if (houseStays != null) {
+            houseStays.keySet().forEach(staysByDeal::remove);
+        }
+        calendars.keySet().removeIf(houseYear -> houseYear.houseId().equals(houseId));
+    }
+
+    private void addStay(Stay stay) {
+        staysByDeal.put(stay.dealId(), stay);
+        staysByHouse.computeIfAbsent(stay.houseId(), k -> new HashMap<>()).put(stay.dealId(), stay);
+    }
+
+    private void rebuild(HouseYear houseYear) {
+        long yearStart = LocalDate.of(houseYear.year(), 1, 1).toEpochDay();
+        long yearEnd = yearStart + Year.of(houseYear.year()).length() - 1;
+
+        var days = new BitSet(366);
+        for (var stay : staysByHouse.getOrDefault(houseYear.houseId(), Map.of()).values()) {
+            long first = Math.max(stay.firstDay(), yearStart);
+            long last = Math.min(stay.lastDay(), yearEnd);
+            if (first <= last) {
+                days.set((int) (first - yearStart), (int) (last - yearStart + 1));
+            }
+        }
+
+        var calendar = YearCalendar.of(days);
+        if (calendar == null) {
+            calendars.remove(houseYear);
+        } else {
+            calendars.put(houseYear, calendar);
+        }
+    }
+
+    private static List<HouseYear> houseYears(Stay stay) {
+        int firstYear = LocalDate.ofEpochDay(stay.firstDay()).getYear();
+        int lastYear = LocalDate.ofEpochDay(stay.lastDay()).getYear();
+
+        List<HouseYear> houseYears = new ArrayList<>(lastYear - firstYear + 1);
+        for (int year = firstYear; year <= lastYear; year++) {
+            houseYears.add(new HouseYear(stay.houseId(), year));
+        }
+        return houseYears;
+    }
+
+    // the end is exclusive, a deal ending at midnight does not book that day
+    private static LocalDate lastBookedDay(Timestamp end) {
+        return end.toInstant().minusNanos(1).atZone(ZONE).toLocalDate();
+    }
+}
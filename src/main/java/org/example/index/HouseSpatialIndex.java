@@ -0,0 +1,232 @@
+package org.example.index;
+
+import jakarta.annotation.PostConstruct;
+import org.example.hibernateController.HibernateSessionController;
+import org.example.model.House;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Uniform lat/lon grid over House.mapLocation ([latitude, longitude]). Radius and box queries only visit the cells
+ * they overlap and nearest-neighbour queries expand ring by ring from the query cell, so their cost depends on
+ * the houses around the point rather than on the catalog size.
+ */
+@Component
+public class HouseSpatialIndex {
+    public record Neighbour(House house, double distanceKm) {
+    }
+
+    private static final double CELL_DEGREES = 0.01; // about 1.1 km of latitude
+    private static final long COLUMNS = (long) Math.ceil(360 / CELL_DEGREES);
+    private static final double KM_PER_DEGREE = 111.195;
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    @Autowired
+    private HibernateSessionController sessionController;
+
+    private final Map<Long, House> houses = new ConcurrentHashMap<>();
+    private final Map<Long, Long> houseCells = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+
+    @PostConstruct
+    public void load() {
+        try (var session = sessionController.openSession()) {
+            var allHouses = session.createQuery("from House", House.class).list();
+
+            synchronized (this) {
+                allHouses.forEach(this::putHouse);
+                loaded = true;
+            }
+        } catch (Exception e) {
+            loaded = false;
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized void putHouse(House house) {
+        removeHouse(house.getId());
+
+        var location = house.getMapLocation();
+        if (location == null || location.length < 2) {
+            return;
+        }
+
+        long cell = cellOf(location[0].doubleValue(), location[1].doubleValue());
+        houses.put(house.getId(), house);
+        houseCells.put(house.getId(), cell);
+        cells.computeIfAbsent(cell, k -> ConcurrentHashMap.newKeySet()).add(house.getId());
+    }
+
+    public synchronized void removeHouse(Long houseId) {
+        houses.remove(houseId);
+        var cell = houseCells.remove(houseId);
+        if (cell != null) {
+            var ids = cells.get(cell);
+            if (ids != null) {
+                ids.remove(houseId);
+                if (ids.isEmpty()) {
+                    cells.remove(cell);
+                }
+            }
+        }
+    }
+
+    public List<Neighbour> withinRadius(double lat, double lon, double radiusKm) {
+        double latSpan = radiusKm / KM_PER_DEGREE;
+        double lonSpan = latSpan / Math.max(Math.cos(Math.toRadians(lat)), 0.01);
+
+        List<Neighbour> result = new ArrayList<>();
+        for (var house : candidatesInBox(lat - latSpan, lon - lonSpan, lat + latSpan, lon + lonSpan)) {
+            double distance = distanceKm(lat, lon, house);
+            if (distance <= radiusKm) {
+                result.add(new Neighbour(house, distance));
+            }
+        }
+        result.sort(Comparator.comparingDouble(Neighbour::distanceKm));
+
+        return result;
+    }
+
+    public List<Neighbour> nearest(double lat, double lon, int k) {
+        int centerRow = row(lat);
+        int centerColumn = column(lon);
+        // lower bound of the distance covered by one ring of cells around the query point
+        double ringKm = CELL_DEGREES * KM_PER_DEGREE * Math.cos(Math.toRadians(Math.min(Math.abs(lat) + 1, 89)));
+        int maxRing = (int) Math.ceil(180 / CELL_DEGREES);
+
+        var best = new PriorityQueue<>(Comparator.comparingDouble(Neighbour::distanceKm).reversed());
+        long visitedCells = 0;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (best.size() == k && best.peek().distanceKm() < (ring - 1) * ringKm) {
+                break; // no house in this or further rings can be closer
+            }
+            if (visitedCells > houses.size()) {
+                return nearestByScan(lat, lon, k); // sparse catalog, scanning is cheaper than more rings
+            }
+
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                for (int column = centerColumn - ring; column <= centerColumn + ring; column++) {
+                    if (Math.abs(row - centerRow) != ring && Math.abs(column - centerColumn) != ring) {
+                        continue; // inner cells were visited by previous rings
+                    }
+                    visitedCells++;
+
+                    for (var house : housesInCell(row, column)) {
+                        best.add(new Neighbour(house, distanceKm(lat, lon, house)));
+                        if (best.size() > k) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        return sorted(best);
+    }
+
+    public List<House> withinBox(double minLat, double minLon, double maxLat, double maxLon) {
+        List<House> result = new ArrayList<>();
+        for (var house : candidatesInBox(minLat, minLon, maxLat, maxLon)) {
+            double lat = house.getMapLocation()[0].doubleValue();
+            double lon = house.getMapLocation()[1].doubleValue();
+            if (lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon) {
+                result.add(house);
+            }
+        }
+        result.sort(Comparator.comparing(House::getId));
+
+        return result;
+    }
+
+    private Collection<House> candidatesInBox(double minLat, double minLon, double maxLat, double maxLon) {
+        int minRow = row(minLat);
+        int maxRow = row(maxLat);
+        int minColumn = column(minLon);
+        int maxColumn = column(maxLon);
+
+        long boxCells = (long) (maxRow - minRow + 1) * (maxColumn - minColumn + 1);
+        if (boxCells > cells.size()) {
+            return houses.values(); // box covers more cells than are occupied
+        }
+
+        List<House> candidates = new ArrayList<>();
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                candidates.addAll(housesInCell(row, column));
+            }
+        }
+
+        return candidates;
+    }
+
+    private List<Neighbour> nearestByScan(double lat, double lon, int k) {
+        var best = new PriorityQueue<>(Comparator.comparingDouble(Neighbour::distanceKm).reversed());
+        for (var house : houses.values()) {
+            best.add(new Neighbour(house, distanceKm(lat, lon, house)));
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+
+        return sorted(best);
+    }
+
+    private List<House> housesInCell(int row, int column) {
+        if (row < 0 || column < 0 || column >= COLUMNS) {
+            return List.of();
+        }
+
+        var ids = cells.get(row * COLUMNS + column);
+        if (ids == null) {
+            return List.of();
+        }
+
+        List<House> result = new ArrayList<>(ids.size());
+        for (var id : ids) {
+            var house = houses.get(id);
+            if (house != null) {
+                result.add(house);
+            }
+        }
+
+        return result;
+    }
+
+    private static List<Neighbour> sorted(PriorityQueue<Neighbour> neighbours) {
+        List<Neighbour> result = new ArrayList<>(neighbours);
+        result.sort(Comparator.comparingDouble(Neighbour::distanceKm));
+        return result;
+    }
+
+    private static long cellOf(double lat, double lon) {
+        return row(lat) * COLUMNS + column(lon);
+    }
+
+    private static int row(double lat) {
+        return (int) Math.floor((Math.max(-90, Math.min(90, lat)) + 90) / CELL_DEGREES);
+    }
+
+    private static int column(double lon) {
+        return (int) Math.floor((Math.max(-180, Math.min(180, lon)) + 180) / CELL_DEGREES);
+    }
+
+    private static double distanceKm(double lat, double lon, House house) {
+        double houseLat = Math.toRadians(house.getMapLocation()[0].doubleValue());
+        double houseLon = Math.toRadians(house.getMapLocation()[1].doubleValue());
+        double pointLat = Math.toRadians(lat);
+
+        double sinLat = Math.sin((houseLat - pointLat) / 2);
+        double sinLon = Math.sin((houseLon - Math.toRadians(lon)) / 2);
+        double a = sinLat * sinLat + Math.cos(pointLat) * Math.cos(houseLat) * sinLon * sinLon;
+
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
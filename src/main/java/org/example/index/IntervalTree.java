@@ -0,0 +1,114 @@
+package org.example.index;
+
+import java.util.function.Consumer;
+
+/**
+ * Half-open ranges [start, end) ordered by start and id, in a treap whose nodes also keep the latest end of their
+ * subtree. An overlap query skips every subtree ending before the range and stops at the first start after it, so it
+ * costs O(log n + hits) whatever the lengths of the ranges.
+ * <p>
+ * Nodes are immutable and changes copy the path to the root, so readers work on a snapshot without locking. Changes
+ * must be serialized by the caller.
+ */
+final class IntervalTree<V> {
+    private record Node<V>(long start, long id, long end, V value, long priority, Node<V> left, Node<V> right,
+                           long maxEnd) {
+        Node<V> with(Node<V> left, Node<V> right) {
+            return new Node<>(start, id, end, value, priority, left, right,
+                    Math.max(end, Math.max(IntervalTree.maxEnd(left), IntervalTree.maxEnd(right))));
+        }
+    }
+
+    private record Split<V>(Node<V> left, Node<V> right) {
+    }
+
+    private volatile Node<V> root;
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    // ids must be unique
+    void add(long start, long end, long id, V value) {
+        var split = split(root, start, id, false);
+        var node = new Node<V>(start, id, end, value, priority(id), null, null, end);
+        root = merge(merge(split.left(), node), split.right());
+    }
+
+    void remove(long start, long id) {
+        var below = split(root, start, id, false);
+        var above = split(below.right(), start, id, true);
+        root = merge(below.left(), above.right());
+    }
+
+    // values whose range overlaps [from, to)
+    void overlapping(long from, long to, Consumer<V> action) {
+        overlapping(root, from, to, action);
+    }
+
+    void forEach(Consumer<V> action) {
+        forEach(root, action);
+    }
+
+    private static <V> void overlapping(Node<V> node, long from, long to, Consumer<V> action) {
+        if (node == null || node.maxEnd() <= from) {
+            return;
+        }
+        overlapping(node.left(), from, to, action);
+        if (node.start() >= to) {
+            return; // the right subtree starts later still
+        }
+        if (node.end() > from) {
+            action.accept(node.value());
+        }
+        overlapping(node.right(), from, to, action);
+    }
+
+    private static <V> void forEach(Node<V> node, Consumer<V> action) {
+        if (node != null) {
+            forEach(node.left(), action);
+            action.accept(node.value());
+            forEach(node.right(), action);
+        }
+    }
+
+    // left: the nodes ordered before (start, id), or up to it when inclusive; right: the others
+    private static <V> Split<V> split(Node<V> node, long start, long id, boolean inclusive) {
+        if (node == null) {
+            return new Split<>(null, null);
+        }
+        int order = node.start() != start ? Long.compare(node.start(), start) : Long.compare(node.id(), id);
+        if (order < 0 || (inclusive && order == 0)) {
+            var split = split(node.right(), start, id, inclusive);
+            return new Split<>(node.with(node.left(), split.left()), split.right());
+        }
+        var split = split(node.left(), start, id, inclusive);
+        return new Split<>(split.left(), node.with(split.right(), node.right()));
+    }
+
+    // every node of left is ordered before every node of right
+    private static <V> Node<V> merge(Node<V> left, Node<V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority() > right.priority()) {
+            return left.with(left.left(), merge(left.right(), right));
+        }
+        return right.with(merge(left, right.left()), right.right());
+    }
+
+    private static long maxEnd(Node<?> node) {
+        return node == null ? Long.MIN_VALUE : node.maxEnd();
+    }
+
+    // deterministic but well spread (splitmix64), so sequential ids still give a balanced treap
+    private static long priority(long id) {
+        long z = id + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,182 @@
+package org.example.ledger;
+
+import jakarta.annotation.PostConstruct;
+import org.example.hibernateController.HibernateSessionController;
+import org.example.model.BalanceEntry;
+import org.example.model.Client;
+import org.hibernate.Session;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Balance changes go to the balance_ledger table, Client.balance is kept as the running sum of the entries.
+ * <p>
+ * Credits of one client are group-committed: a request queues its credit and whoever holds the client's lock
+ * writes everything queued so far with one balance update and one batch of entries. Concurrent top-ups of a hot
+ * account therefore share transactions instead of queueing on the client row lock one by one.
+ */
+@Component
+public class BalanceLedger {
+    private record PendingCredit(BigDecimal amount, BalanceEntry.Kind kind, CompletableFuture<Client> result) {
+    }
+
+    private static final class ClientQueue {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Queue<PendingCredit> credits = new ConcurrentLinkedQueue<>();
+        // threads holding or waiting for the lock, only changed inside compute() of queues
+        private int users;
+    }
+
+    private static final int BATCH_SIZE = 50; // allocation size of balance_ledger_seq
+
+    private static final String APPLY_CREDIT_QUERY = """
+            UPDATE client SET balance = balance + :amount, version = version + 1
+            WHERE id = :id
+            RETURNING *""";
+
+    // an OPENING entry with the current balance for every client that has no entries yet
+    private static final String OPENING_ENTRIES_QUERY = """
+            INSERT INTO balance_ledger (id, id_client, amount, kind, created_at)
+            SELECT nextval('balance_ledger_seq'), c.id, c.balance, 'OPENING', now()
+            FROM client c
+            WHERE (CAST(:id AS bigint) IS NULL OR c.id = CAST(:id AS bigint))
+              AND NOT EXISTS (SELECT 1 FROM balance_ledger l WHERE l.id_client = c.id)""";
+
+    private static final String REBUILD_QUERY = """
+            UPDATE client c
+            SET balance = (SELECT coalesce(sum(l.amount), 0) FROM balance_ledger l WHERE l.id_client = c.id),
+                version = version + 1
+            WHERE id = :id
+            RETURNING *""";
+
+    @Autowired
+    private HibernateSessionController sessionController;
+
+    // only clients with a credit or rebuild in progress have a queue, so ids of unknown clients are not kept
+    private final Map<Long, ClientQueue> queues = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void openLedger() {
+        try (var session = sessionController.openSession()) {
+            session.beginTransaction();
+            addOpeningEntries(session, null);
+            session.getTransaction().commit();
+        } catch (Exception e) {
+            // retried per client by rebuild()
+        }
+    }
+
+    // returns the updated client or null when the client does not exist
+    public Client credit(Long idClient, BigDecimal amount, BalanceEntry.Kind kind) {
+        var queue = acquire(idClient);
+        var credit = new PendingCredit(amount, kind, new CompletableFuture<>());
+        queue.credits.add(credit);
+
+        queue.lock.lock();
+        try {
+            if (!credit.result().isDone()) { // not yet written by the previous lock holder
+                applyQueuedCredits(idClient, queue);
+            }
+        } finally {
+            queue.lock.unlock();
+            release(idClient);
+        }
+
+        try {
+            return credit.result().join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // sets the balance to the sum of the ledger entries, returns null when the client does not exist
+    public Client rebuild(Long idClient) {
+        var queue = acquire(idClient);
+
+        queue.lock.lock();
+        try (var session = sessionController.openSession()) {
+            session.beginTransaction();
+            addOpeningEntries(session, idClient); // a client without entries keeps its balance
+            var client = session.createNativeQuery(REBUILD_QUERY, Client.class)
+                    .setParameter("id", idClient)
+                    .uniqueResult();
+            session.getTransaction().commit();
+
+            return client;
+        } finally {
+            queue.lock.unlock();
+            release(idClient);
+        }
+    }
+
+    // the queue is created by its first user and removed by its last, so all threads working on a client at the
+    // same time share one lock
+    private ClientQueue acquire(Long idClient) {
+        return queues.compute(idClient, (id, queue) -> {
+            var acquired = queue == null ? new ClientQueue() : queue;
+            acquired.users++;
+            return acquired;
+        });
+    }
+
+    private void release(Long idClient) {
+        queues.computeIfPresent(idClient, (id, queue) -> --queue.users == 0 ? null : queue);
+    }
+
+    // records a balance change made by the caller's transaction
+    public void record(Session session, Long idClient, BigDecimal amount, BalanceEntry.Kind kind) {
+        session.persist(new BalanceEntry(idClient, amount, kind));
+    }
+
+    public void deleteEntries(Session session, Long idClient) {
+        session.createMutationQuery("delete from Balance_Entry where idClient = :idClient")
+                .setParameter("idClient", idClient)
+                .executeUpdate();
+    }
+
+    private void applyQueuedCredits(Long idClient, ClientQueue queue) {
+        List<PendingCredit> batch = new ArrayList<>();
+        for (var credit = queue.credits.poll(); credit != null; credit = queue.credits.poll()) {
+            batch.add(credit);
+        }
+
+        var total = batch.stream().map(PendingCredit::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        try (var session = sessionController.openSession()) {
+            session.setJdbcBatchSize(BATCH_SIZE);
+            session.beginTransaction();
+
+            var client = session.createNativeQuery(APPLY_CREDIT_QUERY, Client.class)
+                    .setParameter("amount", total)
+                    .setParameter("id", idClient)
+                    .uniqueResult();
+            if (client != null) {
+                batch.forEach(credit -> record(session, idClient, credit.amount(), credit.kind()));
+            }
+            session.getTransaction().commit();
+
+            batch.forEach(credit -> credit.result().complete(client));
+        } catch (RuntimeException e) {
+            batch.forEach(credit -> credit.result().completeExceptionally(e));
+        }
+    }
+
+    private static void addOpeningEntries(Session session, Long idClient) {
+        // balance_ledger is the only table written, otherwise every cached house and query would be evicted
+        session.createNativeQuery(OPENING_ENTRIES_QUERY, Object.class)
+                .addSynchronizedEntityClass(BalanceEntry.class)
+                .setParameter("id", idClient, StandardBasicTypes.LONG)
+                .executeUpdate();
+    }
+}
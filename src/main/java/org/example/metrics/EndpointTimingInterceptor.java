@@ -0,0 +1,51 @@
+package org.example.metrics;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Times controller requests by mapping pattern, so /api/rented-houses/user/{id} is one series whatever the id.
+ * Streamed responses are timed until the async dispatch that completes them.
+ */
+public class EndpointTimingInterceptor implements AsyncHandlerInterceptor {
+    private static final String START_ATTRIBUTE = EndpointTimingInterceptor.class.getName() + ".start";
+
+    private final HotPathMetrics metrics;
+
+    public EndpointTimingInterceptor(HotPathMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() != DispatcherType.ASYNC) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+        metrics.beginRequest(request.getMethod(), pattern(request));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        metrics.suspendRequest();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (!(request.getAttribute(START_ATTRIBUTE) instanceof Long start)) {
+            return;
+        }
+
+        metrics.endRequest(request.getMethod(), pattern(request), response.getStatus(), System.nanoTime() - start);
+    }
+
+    private static String pattern(HttpServletRequest request) {
+        var pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? "UNKNOWN" : pattern.toString();
+    }
+}
@@ -0,0 +1,176 @@
+package org.example.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms of controller endpoints and service methods plus Hibernate counters, rendered in the
+ * Prometheus text format.
+ * <p>
+ * Statements, their database time and loaded entities are also counted per request: the request thread carries
+ * its profile from beginRequest to endRequest, work done on other threads (streamed responses, startup) only shows
+ * in the totals. Statement shapes and the query budget are handled by QueryStatistics.
+ */
+@Component
+public class HotPathMetrics {
+    private record EndpointKey(String method, String uri, int status) {
+    }
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final String PREFIX = "house_sharing_";
+
+    private final Map<EndpointKey, Summary> endpoints = new ConcurrentHashMap<>();
+    private final Map<String, Summary> serviceMethods = new ConcurrentHashMap<>();
+    private final ThreadLocal<RequestProfile> currentRequest = new ThreadLocal<>();
+
+    private final LongAdder sessionsOpened = new LongAdder();
+    private final LongAdder statementsExecuted = new LongAdder();
+    private final LongAdder entitiesLoaded = new LongAdder();
+    private final Summary commitTime = new Summary();
+    private final Summary requestStatements = new Summary();
+    private final Summary requestEntitiesLoaded = new Summary();
+    private final Summary requestDbTime = new Summary();
+
+    @Autowired
+    private QueryStatistics queryStatistics;
+
+    public void beginRequest(String method, String uri) {
+        currentRequest.set(new RequestProfile(method + " " + uri));
+    }
+
+    // the request continues on another thread, its counts stay incomplete
+    public void suspendRequest() {
+        currentRequest.remove();
+    }
+
+    public void endRequest(String method, String uri, int status, long nanos) {
+        endpoints.computeIfAbsent(new EndpointKey(method, uri, status), key -> new Summary()).record(nanos);
+
+        var profile = currentRequest.get();
+        if (profile != null) {
+            currentRequest.remove();
+            requestStatements.record(profile.statements);
+            requestEntitiesLoaded.record(profile.entitiesLoaded);
+            requestDbTime.record(profile.dbNanos);
+            queryStatistics.requestFinished(profile, nanos);
+        }
+    }
+
+    public Summary serviceMethod(String name) {
+        return serviceMethods.computeIfAbsent(name, key -> new Summary());
+    }
+
+    public void sessionOpened() {
+        sessionsOpened.increment();
+    }
+
+    public void statementExecuted(String sql, long nanos) {
+        statementsExecuted.increment();
+        queryStatistics.statementExecuted(currentRequest.get(), sql, nanos);
+    }
+
+    public void entityLoaded() {
+        entitiesLoaded.increment();
+        var profile = currentRequest.get();
+        if (profile != null) {
+            profile.entitiesLoaded++;
+        }
+    }
+
+    public void transactionCommitted(long nanos) {
+        commitTime.record(nanos);
+    }
+
+    public String scrape() {
+        var text = new StringBuilder(4096);
+
+        Map<String, Summary> endpointFamily = new LinkedHashMap<>();
+        endpoints.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.comparing(EndpointKey::uri)
+                        .thenComparing(EndpointKey::method).thenComparingInt(EndpointKey::status)))
+                .forEach(endpoint -> endpointFamily.put(labels(endpoint.getKey()), endpoint.getValue()));
+        summaries(text, "http_server_requests_seconds", "Time to handle a request by endpoint",
+                endpointFamily, NANOS_PER_SECOND);
+
+        Map<String, Summary> serviceFamily = new LinkedHashMap<>();
+        serviceMethods.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(method -> serviceFamily.put("method=\"" + escape(method.getKey()) + "\"",
+                        method.getValue()));
+        summaries(text, "service_calls_seconds", "Time spent in service methods", serviceFamily, NANOS_PER_SECOND);
+
+        counter(text, "hibernate_sessions_opened_total", "Sessions opened", sessionsOpened.sum());
+        counter(text, "hibernate_statements_executed_total", "JDBC statements and batches executed",
+                statementsExecuted.sum());
+        counter(text, "hibernate_entities_loaded_total", "Entities materialized from rows or the cache",
+                entitiesLoaded.sum());
+
+        summaries(text, "hibernate_transaction_commit_seconds", "Commit time including the final flush",
+                Map.of("", commitTime), NANOS_PER_SECOND);
+        summaries(text, "request_statements", "JDBC statements executed per request",
+                Map.of("", requestStatements), 1);
+        summaries(text, "request_entities_loaded", "Entities loaded per request",
+                Map.of("", requestEntitiesLoaded), 1);
+        summaries(text, "request_db_seconds", "Time spent executing statements per request",
+                Map.of("", requestDbTime), NANOS_PER_SECOND);
+
+        return text.toString();
+    }
+
+    private static void header(StringBuilder text, String name, String type, String help) {
+        text.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder text, String name, String help, long value) {
+        header(text, name, "counter", help);
+        text.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    // labels -> summary; the maxima go to a separate gauge family, summaries only allow quantiles, _sum and _count
+    private static void summaries(StringBuilder text, String name, String help, Map<String, Summary> family,
+                                  double unit) {
+        var maxima = new StringBuilder();
+
+        header(text, name, "summary", help);
+        family.forEach((labels, summary) -> {
+            var snapshot = summary.snapshot(QUANTILES);
+            var separator = labels.isEmpty() ? "" : ",";
+
+            for (int i = 0; i < QUANTILES.length; i++) {
+                sample(text, name, labels + separator + "quantile=\"" + QUANTILES[i] + "\"",
+                        snapshot.quantileValues()[i] / unit);
+            }
+            sample(text, name + "_sum", labels, snapshot.sum() / unit);
+            sample(text, name + "_count", labels, snapshot.count());
+            sample(maxima, name + "_max", labels, snapshot.max() / unit);
+        });
+
+        header(text, name + "_max", "gauge", "Maximum of " + name);
+        text.append(maxima);
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, double value) {
+        text.append(PREFIX).append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ').append(value).append('\n');
+    }
+
+    private static String labels(EndpointKey key) {
+        return "method=\"" + escape(key.method()) + "\",uri=\"" + escape(key.uri())
+                + "\",status=\"" + key.status() + "\"";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
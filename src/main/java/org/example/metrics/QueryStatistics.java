@@ -0,0 +1,140 @@
+package org.example.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Statement statistics by endpoint and SQL shape, and the per-request query budget. A request that runs more
+ * statements or spends more database time than the budget is logged with the statements it ran.
+ */
+@Component
+public class QueryStatistics {
+    public record EndpointReport(String endpoint, long requests, long overBudget, long statements,
+                                 double avgStatements, double dbMillis, double avgDbMillis) {
+    }
+
+    public record StatementReport(String endpoint, String sql, long count, double totalMillis, double avgMillis,
+                                  double maxMillis) {
+    }
+
+    public record Report(long statementBudget, long millisBudget, List<EndpointReport> endpoints,
+                         List<StatementReport> statements) {
+    }
+
+    private record ShapeKey(String endpoint, String shape) {
+    }
+
+    private static final class ShapeStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+    }
+
+    private static final class EndpointStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder overBudget = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder dbNanos = new LongAdder();
+    }
+
+    private static final Logger LOG = LogManager.getLogger(QueryStatistics.class);
+    private static final String NO_REQUEST = "(no request)"; // startup, streamed responses
+    private static final int MAX_SHAPES = 2000;
+    private static final String OTHER_SHAPES = "(other statements)";
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final Map<ShapeKey, ShapeStats> shapes = new ConcurrentHashMap<>();
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+
+    @Value("${metrics.query-budget.statements:10}")
+    private long statementBudget;
+
+    @Value("${metrics.query-budget.millis:100}")
+    private long millisBudget;
+
+    // profile is null outside of a request
+    void statementExecuted(RequestProfile profile, String sql, long nanos) {
+        var shape = SqlShapes.of(sql);
+        var endpoint = profile == null ? NO_REQUEST : profile.endpoint;
+        if (profile != null) {
+            profile.statementExecuted(shape, nanos);
+        }
+
+        var key = new ShapeKey(endpoint, shape);
+        var stats = shapes.get(key);
+        if (stats == null) {
+            // unbounded shapes (e.g. generated IN lists of varying form) fold into one series
+            key = shapes.size() < MAX_SHAPES ? key : new ShapeKey(endpoint, OTHER_SHAPES);
+            stats = shapes.computeIfAbsent(key, k -> new ShapeStats());
+        }
+        stats.count.increment();
+        stats.nanos.add(nanos);
+        stats.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    void requestFinished(RequestProfile profile, long requestNanos) {
+        var stats = endpoints.computeIfAbsent(profile.endpoint, k -> new EndpointStats());
+        stats.requests.increment();
+        stats.statements.add(profile.statements);
+        stats.dbNanos.add(profile.dbNanos);
+
+        if (profile.statements > statementBudget || profile.dbNanos > millisBudget * NANOS_PER_MILLI) {
+            stats.overBudget.increment();
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("{} ran {} statements, {} ms in the database, {} ms in total "
+                                + "(budget {} statements, {} ms): {}",
+                        profile.endpoint, profile.statements, millis(profile.dbNanos), millis(requestNanos),
+                        statementBudget, millisBudget, describe(profile));
+            }
+        }
+    }
+
+    public Report report() {
+        var endpointReports = endpoints.entrySet().stream()
+                .map(entry -> {
+                    var stats = entry.getValue();
+                    long requests = stats.requests.sum();
+                    long statements = stats.statements.sum();
+                    long dbNanos = stats.dbNanos.sum();
+                    return new EndpointReport(entry.getKey(), requests, stats.overBudget.sum(), statements,
+                            requests == 0 ? 0 : (double) statements / requests, millis(dbNanos),
+                            requests == 0 ? 0 : millis(dbNanos) / requests);
+                })
+                .sorted(Comparator.comparingDouble(EndpointReport::dbMillis).reversed())
+                .toList();
+
+        var statementReports = shapes.entrySet().stream()
+                .map(entry -> {
+                    var stats = entry.getValue();
+                    long count = stats.count.sum();
+                    long nanos = stats.nanos.sum();
+                    return new StatementReport(entry.getKey().endpoint(), entry.getKey().shape(), count,
+                            millis(nanos), count == 0 ? 0 : millis(nanos) / count, millis(stats.maxNanos.get()));
+                })
+                .sorted(Comparator.comparingDouble(StatementReport::totalMillis).reversed())
+                .toList();
+
+        return new Report(statementBudget, millisBudget, endpointReports, statementReports);
+    }
+
+    private static String describe(RequestProfile profile) {
+        return profile.shapes.entrySet().stream()
+                .map(shape -> shape.getValue().count + "x " + millis(shape.getValue().nanos) + " ms ["
+                        + shape.getKey() + "]")
+                .collect(Collectors.joining(", "));
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / NANOS_PER_MILLI * 1000) / 1000.0;
+    }
+}
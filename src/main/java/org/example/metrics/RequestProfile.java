@@ -0,0 +1,30 @@
+package org.example.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// database work of one request, only touched by the thread handling it
+final class RequestProfile {
+    static final class ShapeUsage {
+        long count;
+        long nanos;
+    }
+
+    final String endpoint;
+    long statements;
+    long entitiesLoaded;
+    long dbNanos;
+    final Map<String, ShapeUsage> shapes = new LinkedHashMap<>();
+
+    RequestProfile(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    void statementExecuted(String shape, long nanos) {
+        statements++;
+        dbNanos += nanos;
+        var usage = shapes.computeIfAbsent(shape, key -> new ShapeUsage());
+        usage.count++;
+        usage.nanos += nanos;
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps every @Service bean in a class proxy that times its public methods. Calls a service makes on itself are
+ * not intercepted, so each series is the cost of one entry from a controller.
+ */
+@Component
+@SuppressWarnings("unused")
+public class ServiceTimingPostProcessor implements BeanPostProcessor {
+    @Autowired
+    private HotPathMetrics metrics;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        var beanClass = bean.getClass();
+        if (AnnotationUtils.findAnnotation(beanClass, Service.class) == null) {
+            return bean;
+        }
+
+        Map<Method, Summary> summaries = new ConcurrentHashMap<>();
+        var proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+            if (invocation.getMethod().getDeclaringClass() == Object.class) {
+                return invocation.proceed();
+            }
+
+            var summary = summaries.computeIfAbsent(invocation.getMethod(),
+                    method -> metrics.serviceMethod(beanClass.getSimpleName() + "." + method.getName()));
+
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                summary.record(System.nanoTime() - start);
+            }
+        });
+
+        return proxyFactory.getProxy(beanClass.getClassLoader());
+    }
+}
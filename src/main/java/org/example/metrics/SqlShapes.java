@@ -0,0 +1,43 @@
+package org.example.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces SQL to its shape: literals become ?, parameter lists collapse and whitespace is normalized, so the
+ * statements of one query compare equal whatever their arguments.
+ */
+final class SqlShapes {
+    private static final int CACHE_SIZE = 4096;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // Hibernate generates the same strings over and over, the cache stops growing once full
+    private static final Map<String, String> SHAPES = new ConcurrentHashMap<>();
+
+    private SqlShapes() {
+    }
+
+    static String of(String sql) {
+        var shape = SHAPES.get(sql);
+        if (shape == null) {
+            shape = normalize(sql);
+            if (SHAPES.size() < CACHE_SIZE) {
+                SHAPES.put(sql, shape);
+            }
+        }
+
+        return shape;
+    }
+
+    private static String normalize(String sql) {
+        var shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = PARAMETER_LIST.matcher(shape).replaceAll("(?...)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Value distribution backed by an HdrHistogram Recorder. Recording is wait-free; a scrape swaps out the interval
+ * histogram and folds it into the running total, so readers never block the threads that record.
+ */
+public final class Summary {
+    public record Snapshot(long count, long sum, long max, long[] quantileValues) {
+    }
+
+    private static final int SIGNIFICANT_DIGITS = 2; // 1% relative error
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final LongAdder sum = new LongAdder();
+
+    // reader side, guarded by this
+    private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+    private Histogram interval;
+
+    public void record(long value) {
+        value = Math.max(0, value);
+        recorder.recordValue(value);
+        sum.add(value);
+    }
+
+    synchronized Snapshot snapshot(double[] quantiles) {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+
+        long[] values = new long[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            values[i] = total.getTotalCount() == 0 ? 0 : total.getValueAtPercentile(quantiles[i] * 100);
+        }
+
+        return new Snapshot(total.getTotalCount(), sum.sum(), total.getMaxValue(), values);
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * Append-only record of a change of Client.balance. The balance of a client equals the sum of its entries.
+ */
+@Entity(name = "Balance_Entry")
+@Table(name = "balance_ledger", indexes = @Index(name = "balance_ledger_client_idx", columnList = "id_client"))
+@SuppressWarnings("unused")
+public class BalanceEntry {
+    public enum Kind {
+        OPENING, // balance of the client when the ledger was started or the client was created
+        TOP_UP,
+        ADJUSTMENT // balance set directly through client editing
+    }
+
+    // sequence ids let Hibernate batch the inserts of a group commit
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_ledger_seq")
+    @SequenceGenerator(name = "balance_ledger_seq", sequenceName = "balance_ledger_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "id_client", nullable = false)
+    private Long idClient;
+
+    @Column(name = "amount", nullable = false, precision = 38, scale = 2) // same type as client.balance
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false, length = 20)
+    private Kind kind;
+
+    @Column(name = "created_at", nullable = false, columnDefinition = "TIMESTAMP")
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS", timezone = "Europe/Moscow")
+    private Timestamp createdAt;
+
+    public BalanceEntry() {
+    }
+
+    public BalanceEntry(Long idClient, BigDecimal amount, Kind kind) {
+        this.idClient = idClient;
+        this.amount = amount;
+        this.kind = kind;
+        this.createdAt = new Timestamp(System.currentTimeMillis());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getIdClient() {
+        return idClient;
+    }
+
+    public void setIdClient(Long idClient) {
+        this.idClient = idClient;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -2,14 +2,16 @@ package org.example.model;
 
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.*;
+import org.example.response.JsonSupport;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.util.Objects;
 
 @Entity
 @Table(name = "Client")
+@DynamicUpdate
 @SuppressWarnings("unused")
 public class Client {
     @Id
@@ -37,6 +39,11 @@ public class Client {
     @Column(name = "photo_link")
     private String photoLink;
 
+    // no initializer: an edit body without 'version' must bind as null, persist() seeds new clients with 0
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0 not null")
+    private Long version;
+
     public Long getId() {
         return id;
     }
@@ -101,6 +108,14 @@ public class Client {
         this.photoLink = photoLink;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(login, password, status, phoneNumber, balance);
@@ -126,7 +141,7 @@ public class Client {
     @Override
     public String toString() {
         try {
-            return new ObjectMapper().writeValueAsString(this);
+            return JsonSupport.MAPPER.writeValueAsString(this);
         } catch (JsonProcessingException e) {
             return e.getMessage();
         }
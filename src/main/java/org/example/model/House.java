@@ -2,8 +2,11 @@ package org.example.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.*;
+import org.example.response.JsonSupport;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.sql.Timestamp;
@@ -12,6 +15,9 @@ import java.util.Objects;
 
 @Entity
 @Table(name = "House")
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "house")
 @SuppressWarnings("unused")
 public class House {
 
@@ -179,7 +185,7 @@ public class House {
     @Override
     public String toString() {
         try {
-            return new ObjectMapper().writeValueAsString(this);
+            return JsonSupport.MAPPER.writeValueAsString(this);
         } catch (JsonProcessingException e) {
             return e.getMessage();
         }
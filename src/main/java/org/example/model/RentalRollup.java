@@ -0,0 +1,96 @@
+package org.example.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Deal totals per day or month of the rental start, district and comfort class. Rows are maintained with upserts
+ * in the transactions that change deals, see RentalRollups.
+ */
+@Entity(name = "Rental_Rollup")
+@Table(name = "rental_rollup")
+@SuppressWarnings("unused")
+public class RentalRollup {
+    public enum Granularity {
+        DAY,
+        MONTH
+    }
+
+    @Embeddable
+    public static class Key implements Serializable {
+        @Enumerated(EnumType.STRING)
+        @Column(name = "granularity", nullable = false, length = 10)
+        private Granularity granularity;
+
+        // first day of the bucket
+        @Column(name = "bucket_start", nullable = false)
+        private LocalDate bucketStart;
+
+        // '' when the house is unknown
+        @Column(name = "district", nullable = false, length = 100)
+        private String district;
+
+        @Column(name = "comfort_class", nullable = false, length = 100)
+        private String comfortClass;
+
+        public Granularity getGranularity() {
+            return granularity;
+        }
+
+        public LocalDate getBucketStart() {
+            return bucketStart;
+        }
+
+        public String getDistrict() {
+            return district;
+        }
+
+        public String getComfortClass() {
+            return comfortClass;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && granularity == key.granularity
+                    && Objects.equals(bucketStart, key.bucketStart) && Objects.equals(district, key.district)
+                    && Objects.equals(comfortClass, key.comfortClass);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(granularity, bucketStart, district, comfortClass);
+        }
+    }
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "deal_count", nullable = false)
+    private Long dealCount;
+
+    @Column(name = "revenue", nullable = false, precision = 38, scale = 2)
+    private BigDecimal revenue;
+
+    @Column(name = "rental_days", nullable = false)
+    private Long rentalDays;
+
+    public Key getId() {
+        return id;
+    }
+
+    public Long getDealCount() {
+        return dealCount;
+    }
+
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    public Long getRentalDays() {
+        return rentalDays;
+    }
+}
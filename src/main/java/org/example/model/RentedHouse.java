@@ -7,7 +7,10 @@ import java.math.BigDecimal;
 import java.sql.Timestamp;
 
 @Entity(name = "Rented_House")
-@Table(name = "Rented_House")
+@Table(name = "Rented_House", indexes = {
+        @Index(name = "rented_house_active_end_idx", columnList = "active, rental_end_date"),
+        @Index(name = "rented_house_house_active_idx", columnList = "id_house, active"),
+        @Index(name = "rented_house_client_active_idx", columnList = "id_client, active")})
 @SuppressWarnings("unused")
 public class RentedHouse {
     @Id
@@ -34,6 +37,10 @@ public class RentedHouse {
     @Column(name = "total_amount", nullable = false, precision = 8, scale = 2)
     private BigDecimal totalAmount = BigDecimal.ZERO;
 
+    // the rental has not ended yet; set by the services on writes and cleared by RentalExpiry when it ends
+    @Column(name = "active", nullable = false, columnDefinition = "boolean default true not null")
+    private Boolean active = true;
+
     public Long getId() {
         return id;
     }
@@ -89,4 +96,12 @@ public class RentedHouse {
     public void setTotalAmount(BigDecimal totalAmount) {
         this.totalAmount = totalAmount;
     }
+
+    public Boolean getActive() {
+        return active;
+    }
+
+    public void setActive(Boolean active) {
+        this.active = active;
+    }
 }
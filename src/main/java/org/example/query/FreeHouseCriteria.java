@@ -0,0 +1,133 @@
+package org.example.query;
+
+import org.example.model.House;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Free-house search filters. Every combination of filters runs the same statement with bound parameters,
+ * so PostgreSQL and the JDBC driver can reuse one prepared statement; an unset filter binds NULL (or an empty
+ * array) and is switched off inside the statement.
+ */
+public record FreeHouseCriteria(String comfortClass, List<String> districts, BigDecimal minPrice,
+                                BigDecimal maxPrice, Integer minParkingSpaces, Boolean withDiscount) {
+    private static final String FILTERS = """
+            (CAST(:comfortClass AS text) IS NULL OR lower(comfort_class) = CAST(:comfortClass AS text))
+              AND (cardinality(CAST(:districts AS text[])) = 0 OR lower(district) = ANY(CAST(:districts AS text[])))
+              AND (CAST(:minPrice AS numeric) IS NULL OR price_per_day >= CAST(:minPrice AS numeric))
+              AND (CAST(:maxPrice AS numeric) IS NULL OR price_per_day <= CAST(:maxPrice AS numeric))
+              AND (CAST(:minParkingSpaces AS integer) IS NULL
+                   OR parking_spaces_count >= CAST(:minParkingSpaces AS integer))
+              AND (CAST(:withDiscount AS boolean) IS NULL
+                   OR (discount_price IS NOT NULL) = CAST(:withDiscount AS boolean))
+            """;
+
+    // houses without an active deal
+    private static final String FREE_HOUSES_QUERY = """
+            SELECT * FROM House h
+            WHERE NOT EXISTS (SELECT 1 FROM Rented_House r WHERE r.id_house = h.id AND r.active)
+              AND\s""" + FILTERS + "ORDER BY id";
+
+    // houses without a deal overlapping [from, to)
+    private static final String FREE_HOUSES_BETWEEN_QUERY = """
+            SELECT * FROM House h
+            WHERE NOT EXISTS (SELECT 1 FROM Rented_House r
+                              WHERE r.id_house = h.id AND r.rental_start_date < :to AND r.rental_end_date > :from)
+              AND\s""" + FILTERS + "ORDER BY id";
+
+    public FreeHouseCriteria {
+        // comfort class and districts are matched case-insensitively, as the former ILIKE filters did
+        comfortClass = comfortClass == null || comfortClass.isEmpty() ? null : normalize(comfortClass);
+        districts = districts == null ? List.of() : districts.stream()
+                .filter(district -> district != null && !district.isEmpty())
+                .map(FreeHouseCriteria::normalize)
+                .toList();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    public NativeQuery<House> toQuery(Session session) {
+        return bindFilters(session.createNativeQuery(FREE_HOUSES_QUERY, House.class));
+    }
+
+    public NativeQuery<House> toQuery(Session session, Timestamp from, Timestamp to) {
+        return bindFilters(session.createNativeQuery(FREE_HOUSES_BETWEEN_QUERY, House.class))
+                .setParameter("from", from)
+                .setParameter("to", to);
+    }
+
+    private NativeQuery<House> bindFilters(NativeQuery<House> query) {
+        return query
+                .setParameter("comfortClass", comfortClass, StandardBasicTypes.STRING)
+                .setParameter("districts", districts.toArray(String[]::new))
+                .setParameter("minPrice", minPrice, StandardBasicTypes.BIG_DECIMAL)
+                .setParameter("maxPrice", maxPrice, StandardBasicTypes.BIG_DECIMAL)
+                .setParameter("minParkingSpaces", minParkingSpaces, StandardBasicTypes.INTEGER)
+                .setParameter("withDiscount", withDiscount, StandardBasicTypes.BOOLEAN);
+    }
+
+    // the same filters for houses already held in memory
+    public boolean matches(House house) {
+        return (comfortClass == null || comfortClass.equals(normalize(house.getComfortClass())))
+                && (districts.isEmpty() || districts.contains(normalize(house.getDistrict())))
+                && (minPrice == null || house.getPricePerDay().compareTo(minPrice) >= 0)
+                && (maxPrice == null || house.getPricePerDay().compareTo(maxPrice) <= 0)
+                && (minParkingSpaces == null || house.getParkingSpacesCount() >= minParkingSpaces)
+                && (withDiscount == null || withDiscount == (house.getDiscountPrice() != null));
+    }
+
+    public static class Builder {
+        private String comfortClass;
+        private List<String> districts;
+        private BigDecimal minPrice;
+        private BigDecimal maxPrice;
+        private Integer minParkingSpaces;
+        private Boolean withDiscount;
+
+        public Builder comfortClass(String comfortClass) {
+            this.comfortClass = comfortClass;
+            return this;
+        }
+
+        public Builder districts(List<String> districts) {
+            this.districts = districts;
+            return this;
+        }
+
+        public Builder minPrice(BigDecimal minPrice) {
+            this.minPrice = minPrice;
+            return this;
+        }
+
+        public Builder maxPrice(BigDecimal maxPrice) {
+            this.maxPrice = maxPrice;
+            return this;
+        }
+
+        public Builder minParkingSpaces(Integer minParkingSpaces) {
+            this.minParkingSpaces = minParkingSpaces;
+            return this;
+        }
+
+        public Builder withDiscount(Boolean withDiscount) {
+            this.withDiscount = withDiscount;
+            return this;
+        }
+
+        public FreeHouseCriteria build() {
+            return new FreeHouseCriteria(comfortClass, districts, minPrice, maxPrice, minParkingSpaces, withDiscount);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.request;
+
+import org.example.model.RentedHouse;
+
+import java.util.List;
+
+// partial: create the deals that can be booked and report the others, otherwise all deals or none
+public record CreateDealsRequest(List<RentedHouse> deals, Boolean partial) {
+    public boolean isPartial() {
+        return Boolean.TRUE.equals(partial);
+    }
+}
@@ -0,0 +1,10 @@
+package org.example.request;
+
+import java.math.BigDecimal;
+
+// numeric fields are also accepted as JSON strings, as the former Map-based parsing required
+public record ExtendDealRequest(Long idRentedHouse, Integer additionalDays, BigDecimal additionalPrice) {
+    public boolean isComplete() {
+        return idRentedHouse != null && additionalDays != null && additionalPrice != null;
+    }
+}
@@ -0,0 +1,4 @@
+package org.example.request;
+
+public record IdRequest(Long id) {
+}
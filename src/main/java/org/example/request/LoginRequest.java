@@ -0,0 +1,7 @@
+package org.example.request;
+
+public record LoginRequest(String login, String password) {
+    public boolean isComplete() {
+        return login != null && password != null;
+    }
+}
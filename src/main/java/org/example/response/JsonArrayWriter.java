@@ -0,0 +1,36 @@
+package org.example.response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Writes {"field": [item, ...]} to a stream one item at a time, so the whole result is never held in memory.
+ */
+public final class JsonArrayWriter {
+    private static final int FLUSH_EVERY = 256;
+
+    private JsonArrayWriter() {
+    }
+
+    public static void write(ObjectMapper mapper, OutputStream outputStream, String fieldName, Stream<?> items)
+            throws IOException {
+        try (var generator = mapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart(fieldName);
+
+            int written = 0;
+            for (var iterator = items.iterator(); iterator.hasNext(); ) {
+                generator.writeObject(iterator.next());
+                if (++written % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * The application's single ObjectMapper. Building a mapper is expensive and every instance keeps its own serializer
+ * caches, so the HTTP message converters and all manual (de)serialization share this one.
+ */
+public final class JsonSupport {
+    // Spring Boot's defaults: unknown properties are ignored, dates are written as text
+    public static final ObjectMapper MAPPER = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS,
+                    SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS)
+            .build();
+
+    private JsonSupport() {
+    }
+}
@@ -1,7 +1,9 @@
 package org.example.response;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 public enum ResponseMessage {
     CLIENT_NOT_FOUND("Client not found"),
@@ -10,30 +12,33 @@ public enum ResponseMessage {
     LOGIN_OR_PHONE_NUMBER_ALREADY_EXISTS("Login or phone number already exists"),
     HOUSE_ALREADY_EXISTS("House already exists"),
     DEAL_ALREADY_EXISTS("Deal already exists"),
+    HOUSE_ALREADY_BOOKED("House is already booked for these dates"),
     HOUSES_NOT_FOUND("Houses not found"),
     NO_DIFFERENCE_BETWEEN_DATA("No difference between new and old data"),
+    CLIENT_WAS_MODIFIED("Client was modified by another request, reload it and try again"),
     HOUSE_NOT_FOUND("House not found"),
+    DEAL_NOT_FOUND("Deal not found"),
     DELETED_SUCCESSFULLY("Deleted successfully");
 
-    private final String message;
+    private final String json;
+    private final byte[] jsonBytes;
 
+    // bodies never change, so they are serialized once
     ResponseMessage(String message) {
-        this.message = message;
+        try {
+            this.json = JsonSupport.MAPPER.writeValueAsString(Map.of("message", message));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        this.jsonBytes = json.getBytes(StandardCharsets.UTF_8);
     }
 
     public String getJSON() {
-        class MessageObject {
-            public final String message;
-
-            MessageObject(String message) {
-                this.message = message;
-            }
-        }
+        return json;
+    }
 
-        try {
-            return new ObjectMapper().writeValueAsString(new MessageObject(this.message));
-        } catch (JsonProcessingException e) {
-            return e.getMessage();
-        }
+    // the shared array itself, so writing a response allocates nothing; callers must not modify it
+    public byte[] getJSONBytes() {
+        return jsonBytes;
     }
-}
+}
\ No newline at end of file
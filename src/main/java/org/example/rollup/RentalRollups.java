@@ -0,0 +1,247 @@
+package org.example.rollup;
+
+import jakarta.annotation.PostConstruct;
+import org.example.hibernateController.HibernateSessionController;
+import org.example.model.House;
+import org.example.model.RentalRollup;
+import org.example.model.RentalRollup.Granularity;
+import org.example.model.RentedHouse;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Keeps the rental_rollup table: deal count, revenue and rental days per day and per month of the rental start,
+ * district and comfort class. Deal changes are applied as deltas by the transaction that changes the deal, so the
+ * rollups are as consistent as the deals themselves, and period reports read at most a few buckets.
+ */
+@Component
+public class RentalRollups {
+    // what a deal contributes to the rollups
+    public record DealFacts(LocalDate startDate, String district, String comfortClass, BigDecimal revenue,
+                            long rentalDays) {
+        public static DealFacts of(RentedHouse deal, House house) {
+            return house == null ? of(deal, null, null) : of(deal, house.getDistrict(), house.getComfortClass());
+        }
+
+        private static DealFacts of(RentedHouse deal, String district, String comfortClass) {
+            return new DealFacts(deal.getRentalStartDate().toLocalDateTime().toLocalDate(),
+                    district == null ? "" : district, comfortClass == null ? "" : comfortClass,
+                    deal.getTotalAmount(), deal.getRentalDuration());
+        }
+    }
+
+    public record Totals(String key, long dealCount, BigDecimal revenue, long rentalDays) {
+    }
+
+    public record Report(String period, LocalDate from, LocalDate to, Totals total, List<Totals> byDistrict,
+                         List<Totals> byComfortClass) {
+    }
+
+    private record BucketKey(Granularity granularity, LocalDate bucketStart, String district, String comfortClass) {
+    }
+
+    private static final class Delta {
+        private long deals;
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private long rentalDays;
+    }
+
+    private static final String UPSERT_PREFIX = """
+            INSERT INTO rental_rollup (granularity, bucket_start, district, comfort_class, deal_count, revenue,
+                                       rental_days)
+            VALUES\s""";
+
+    private static final String UPSERT_ROW =
+            "(:granularity%1$d, :bucketStart%1$d, :district%1$d, :comfortClass%1$d, :deals%1$d, :revenue%1$d, "
+                    + ":rentalDays%1$d)";
+
+    private static final String UPSERT_SUFFIX = """
+             ON CONFLICT (granularity, bucket_start, district, comfort_class) DO UPDATE
+            SET deal_count = rental_rollup.deal_count + EXCLUDED.deal_count,
+                revenue = rental_rollup.revenue + EXCLUDED.revenue,
+                rental_days = rental_rollup.rental_days + EXCLUDED.rental_days""";
+
+    private static final String BACKFILL_QUERY = """
+            INSERT INTO rental_rollup (granularity, bucket_start, district, comfort_class, deal_count, revenue,
+                                       rental_days)
+            SELECT :granularity, CAST(date_trunc(:unit, r.rental_start_date) AS date),
+                   coalesce(h.district, ''), coalesce(h.comfort_class, ''),
+                   count(*), sum(r.total_amount), sum(r.rental_duration)
+            FROM rented_house r
+            LEFT JOIN house h ON h.id = r.id_house
+            GROUP BY 1, 2, 3, 4""";
+
+    private static final String REPORT_QUERY = """
+            select id.district, id.comfortClass, sum(dealCount), sum(revenue), sum(rentalDays)
+            from Rental_Rollup
+            where id.granularity = :granularity and id.bucketStart >= :from and id.bucketStart < :to
+            group by id.district, id.comfortClass""";
+
+    @Autowired
+    private HibernateSessionController sessionController;
+
+    // fills the rollups from the deals when the table was just created
+    @PostConstruct
+    public void backfill() {
+        try (var session = sessionController.openSession()) {
+            session.beginTransaction();
+            var rows = session.createQuery("select count(*) from Rental_Rollup", Long.class).uniqueResult();
+            if (rows == 0) {
+                for (var granularity : Granularity.values()) {
+                    session.createNativeQuery(BACKFILL_QUERY, Object.class)
+                            .addSynchronizedEntityClass(RentalRollup.class)
+                            .setParameter("granularity", granularity.name())
+                            .setParameter("unit", granularity.name().toLowerCase())
+                            .executeUpdate();
+                }
+            }
+            session.getTransaction().commit();
+        } catch (Exception e) {
+            // reports stay empty until the next start
+        }
+    }
+
+    // before is null for a new deal, after is null for a removed one
+    public void dealChanged(Session session, DealFacts before, DealFacts after) {
+        Map<BucketKey, Delta> deltas = new LinkedHashMap<>();
+        if (before != null) {
+            addDelta(deltas, before, -1);
+        }
+        if (after != null) {
+            addDelta(deltas, after, 1);
+        }
+        apply(session, deltas);
+    }
+
+    public void dealsCreated(Session session, Collection<DealFacts> deals) {
+        Map<BucketKey, Delta> deltas = new LinkedHashMap<>();
+        deals.forEach(deal -> addDelta(deltas, deal, 1));
+        apply(session, deltas);
+    }
+
+    /**
+     * Moves the deals of a house to the buckets of its new district and comfort class. Deals are counted under the
+     * values the house has when they are written, so the caller must hold the house row lock that deal writes take.
+     */
+    public void houseChanged(Session session, House house, String districtBefore, String comfortClassBefore) {
+        if (Objects.equals(districtBefore, house.getDistrict())
+                && Objects.equals(comfortClassBefore, house.getComfortClass())) {
+            return;
+        }
+
+        Map<BucketKey, Delta> deltas = new LinkedHashMap<>();
+        session.createQuery("from Rented_House where idHouse = :idHouse", RentedHouse.class)
+                .setParameter("idHouse", house.getId())
+                .list()
+                .forEach(deal -> {
+                    addDelta(deltas, DealFacts.of(deal, districtBefore, comfortClassBefore), -1);
+                    addDelta(deltas, DealFacts.of(deal, house), 1);
+                });
+        apply(session, deltas);
+    }
+
+    // day: the given date, month and year: the calendar month or year containing it
+    public Report report(Session session, String period, LocalDate date) {
+        LocalDate from;
+        LocalDate to;
+        Granularity granularity;
+        switch (period) {
+            case "day" -> {
+                from = date;
+                to = date.plusDays(1);
+                granularity = Granularity.DAY;
+            }
+            case "month" -> {
+                from = date.withDayOfMonth(1);
+                to = from.plusMonths(1);
+                granularity = Granularity.MONTH;
+            }
+            case "year" -> {
+                from = date.withDayOfYear(1);
+                to = from.plusYears(1);
+                granularity = Granularity.MONTH;
+            }
+            default -> throw new IllegalArgumentException(period);
+        }
+
+        var rows = session.createQuery(REPORT_QUERY, Object[].class)
+                .setParameter("granularity", granularity)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .list();
+
+        Map<String, Totals> byDistrict = new TreeMap<>();
+        Map<String, Totals> byComfortClass = new TreeMap<>();
+        var total = new Totals("total", 0, BigDecimal.ZERO, 0);
+        for (var row : rows) {
+            var cell = new Totals(null, ((Number) row[2]).longValue(), (BigDecimal) row[3],
+                    ((Number) row[4]).longValue());
+            byDistrict.merge((String) row[0], withKey((String) row[0], cell), RentalRollups::sum);
+            byComfortClass.merge((String) row[1], withKey((String) row[1], cell), RentalRollups::sum);
+            total = sum(total, cell);
+        }
+
+        return new Report(period, from, to, total, new ArrayList<>(byDistrict.values()),
+                new ArrayList<>(byComfortClass.values()));
+    }
+
+    private static void addDelta(Map<BucketKey, Delta> deltas, DealFacts deal, int sign) {
+        var day = deal.startDate();
+        var month = day.withDayOfMonth(1);
+        addDelta(deltas, new BucketKey(Granularity.DAY, day, deal.district(), deal.comfortClass()), deal, sign);
+        addDelta(deltas, new BucketKey(Granularity.MONTH, month, deal.district(), deal.comfortClass()), deal, sign);
+    }
+
+    private static void addDelta(Map<BucketKey, Delta> deltas, BucketKey key, DealFacts deal, int sign) {
+        var delta = deltas.computeIfAbsent(key, k -> new Delta());
+        delta.deals += sign;
+        delta.revenue = delta.revenue.add(sign < 0 ? deal.revenue().negate() : deal.revenue());
+        delta.rentalDays += sign * deal.rentalDays();
+    }
+
+    // one statement for all buckets; the keys are distinct, as ON CONFLICT cannot update a row twice
+    private static void apply(Session session, Map<BucketKey, Delta> deltas) {
+        deltas.values().removeIf(delta -> delta.deals == 0 && delta.revenue.signum() == 0 && delta.rentalDays == 0);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        var sql = new StringJoiner(", ", UPSERT_PREFIX, UPSERT_SUFFIX);
+        for (int i = 0; i < deltas.size(); i++) {
+            sql.add(UPSERT_ROW.formatted(i));
+        }
+
+        // without the table Hibernate would treat every table as changed and evict all cached houses and queries;
+        // createNativeMutationQuery() cannot declare it
+        var query = session.createNativeQuery(sql.toString(), Object.class)
+                .addSynchronizedEntityClass(RentalRollup.class);
+        int i = 0;
+        for (var entry : deltas.entrySet()) {
+            var key = entry.getKey();
+            var delta = entry.getValue();
+            query.setParameter("granularity" + i, key.granularity().name())
+                    .setParameter("bucketStart" + i, key.bucketStart())
+                    .setParameter("district" + i, key.district())
+                    .setParameter("comfortClass" + i, key.comfortClass())
+                    .setParameter("deals" + i, delta.deals)
+                    .setParameter("revenue" + i, delta.revenue)
+                    .setParameter("rentalDays" + i, delta.rentalDays);
+            i++;
+        }
+        query.executeUpdate();
+    }
+
+    private static Totals withKey(String key, Totals totals) {
+        return new Totals(key, totals.dealCount(), totals.revenue(), totals.rentalDays());
+    }
+
+    private static Totals sum(Totals a, Totals b) {
+        return new Totals(a.key(), a.dealCount() + b.dealCount(), a.revenue().add(b.revenue()),
+                a.rentalDays() + b.rentalDays());
+    }
+}
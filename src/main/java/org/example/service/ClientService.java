@@ -1,24 +1,30 @@
 package org.example.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.OptimisticLockException;
 import org.example.ExceptionHandler.ExceptionHandler;
 import org.example.hibernateController.HibernateSessionController;
+import org.example.ledger.BalanceLedger;
+import org.example.model.BalanceEntry;
 import org.example.model.Client;
+import org.example.request.LoginRequest;
+import org.example.response.JsonArrayWriter;
 import org.example.response.ResponseMessage;
+import org.hibernate.Session;
+import org.hibernate.StaleStateException;
 import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
 import java.util.Random;
 
 @Service
@@ -27,11 +33,26 @@ public class ClientService {
     private record Clients(List<Client> clients) {
     }
 
+    private record ClientsPage(List<Client> clients, Long nextAfterId) {
+    }
+
+    private static final EntityMerger<Client> CLIENT_MERGER = new EntityMerger<>(Client.class, "id", "version");
+
     @Autowired
     private HibernateSessionController sessionController;
 
-    public ResponseEntity<?> getAllClients() {
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BalanceLedger balanceLedger;
+
+    public ResponseEntity<?> getAllClients(Long afterId, Integer limit) {
         try (var session = sessionController.openSession()) {
+            if (afterId != null || limit != null) {
+                return getClientsPage(session, Pagination.afterId(afterId), Pagination.pageSize(limit));
+            }
+
             var clients = session.createQuery("from Client", Client.class).list();
             if (clients == null || clients.isEmpty()) {
                 return ExceptionHandler.handleInfoException(ResponseMessage.CLIENTS_NOT_FOUND, HttpStatus.NOT_FOUND);
@@ -43,6 +64,25 @@ public class ClientService {
         }
     }
 
+    private ResponseEntity<?> getClientsPage(Session session, long afterId, int pageSize) {
+        var clients = session.createQuery("from Client where id > :afterId order by id", Client.class)
+                .setParameter("afterId", afterId)
+                .setMaxResults(pageSize)
+                .list();
+
+        Long lastId = clients.isEmpty() ? null : clients.get(clients.size() - 1).getId();
+        return new ResponseEntity<>(new ClientsPage(clients, Pagination.nextAfterId(pageSize, clients.size(), lastId)),
+                HttpStatus.OK);
+    }
+
+    public ResponseEntity<StreamingResponseBody> streamAllClients() {
+        StreamingResponseBody body = outputStream -> sessionController.streamQuery(
+                "from Client order by id", Client.class,
+                clients -> JsonArrayWriter.write(objectMapper, outputStream, "clients", clients));
+
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
     public ResponseEntity<?> getClientById(Long id) {
         try (var session = sessionController.openSession()) {
             var client = session.get(Client.class, id);
@@ -56,12 +96,10 @@ public class ClientService {
         }
     }
 
-    public ResponseEntity<?> getClientByLoginAndPassword(String loginDataJSON) {
+    public ResponseEntity<?> getClientByLoginAndPassword(LoginRequest loginRequest) {
         try (var session = sessionController.openSession()) {
-            var loginDataMap = new ObjectMapper().readValue(loginDataJSON, Map.class);
-
-            String login = (String) loginDataMap.get("login");
-            String password = (String) loginDataMap.get("password");
+            String login = loginRequest.login();
+            String password = loginRequest.password();
 
             var query = session.createQuery("from Client where login = :login and password = :password", Client.class);
             query.setParameter("login", login);
@@ -79,8 +117,6 @@ public class ClientService {
             }
 
             return new ResponseEntity<>(client, HttpStatus.OK);
-        } catch (JsonProcessingException e) {
-            return ExceptionHandler.handleServerException(e, HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return ExceptionHandler.handleServerException(e);
         }
@@ -91,6 +127,7 @@ public class ClientService {
             session.beginTransaction();
             newClient.setPassword(hashPassword(newClient.getPassword())); // hash password
             session.persist(newClient);
+            balanceLedger.record(session, newClient.getId(), newClient.getBalance(), BalanceEntry.Kind.OPENING);
             session.getTransaction().commit();
 
             return new ResponseEntity<>(newClient, HttpStatus.CREATED);
@@ -101,23 +138,29 @@ public class ClientService {
         }
     }
 
-    public ResponseEntity<?> getMoneyToClient(String idClientJSON) {
-        try (var session = sessionController.openSession()) {
-            var idMap = new ObjectMapper().readValue(idClientJSON, Map.class);
-            Long id = new ObjectMapper().convertValue(idMap.get("id"), Long.class);
-
+    public ResponseEntity<?> getMoneyToClient(Long id) {
+        try {
             var random = new Random();
+            var amount = BigDecimal.valueOf(random.nextDouble() * 999.99 + 0.01) // [0.01; 1000.0]
+                    .setScale(2, RoundingMode.HALF_UP); // scale of client.balance, so the ledger sums up exactly
 
-            var client = session.get(Client.class, id);
+            var client = balanceLedger.credit(id, amount, BalanceEntry.Kind.TOP_UP);
             if (client == null) {
                 return ExceptionHandler.handleInfoException(ResponseMessage.CLIENT_NOT_FOUND, HttpStatus.NOT_FOUND);
             }
 
-            session.beginTransaction();
-            var newBalance = BigDecimal.valueOf(random.nextDouble() * 999.99 + 0.01); // [0.01; 1000.0]
-            client.setBalance(client.getBalance().add(newBalance));
-            session.merge(client);
-            session.getTransaction().commit();
+            return new ResponseEntity<>(client, HttpStatus.OK);
+        } catch (Exception e) {
+            return ExceptionHandler.handleServerException(e);
+        }
+    }
+
+    public ResponseEntity<?> rebuildBalance(Long id) {
+        try {
+            var client = balanceLedger.rebuild(id);
+            if (client == null) {
+                return ExceptionHandler.handleInfoException(ResponseMessage.CLIENT_NOT_FOUND, HttpStatus.NOT_FOUND);
+            }
 
             return new ResponseEntity<>(client, HttpStatus.OK);
         } catch (Exception e) {
@@ -127,60 +170,60 @@ public class ClientService {
 
     public ResponseEntity<?> editClient(Client editedClient) {
         try (var session = sessionController.openSession()) {
-            Client oldClient = session.get(Client.class, editedClient.getId());
-            if (oldClient.equals(editedClient)) {
-                return ExceptionHandler.handleInfoException(ResponseMessage.NO_DIFFERENCE_BETWEEN_DATA, HttpStatus.CONFLICT);
+            Client oldClient = editedClient.getId() == null ? null : session.get(Client.class, editedClient.getId());
+            if (oldClient == null) {
+                return ExceptionHandler.handleInfoException(ResponseMessage.CLIENT_NOT_FOUND, HttpStatus.NOT_FOUND);
             }
 
-            try {
-                // search for the necessary set methods
-                var methods = oldClient.getClass().getMethods();
-                for (var method : methods) {
-                    if (method.getName().startsWith("get") && method.getParameterTypes().length == 0
-                            && !void.class.equals(method.getReturnType())) {
-                        if (!Objects.equals(method.invoke(oldClient), method.invoke(editedClient))) {
-                            var setterName = method.getName().replace("get", "set");
-                            var setter = Client.class.getMethod(setterName, method.getReturnType());
-                            setter.invoke(oldClient, method.invoke(editedClient));
-                        }
-                    }
-                }
+            // only callers that sent the version they read get the stale check, older callers do not know the field
+            if (editedClient.getVersion() != null && !editedClient.getVersion().equals(oldClient.getVersion())) {
+                return ExceptionHandler.handleInfoException(ResponseMessage.CLIENT_WAS_MODIFIED, HttpStatus.CONFLICT);
+            }
 
-            } catch (Exception e) {
-                return ExceptionHandler.handleServerException(e);
+            var oldBalance = oldClient.getBalance();
+            var changedProperties = CLIENT_MERGER.merge(oldClient, editedClient);
+            if (changedProperties.isEmpty()) {
+                return ExceptionHandler.handleInfoException(ResponseMessage.NO_DIFFERENCE_BETWEEN_DATA, HttpStatus.CONFLICT);
             }
 
+            // oldClient is managed, the flush on commit updates only the changed columns (@DynamicUpdate)
+            // and fails if a concurrent change bumped the version in between
             session.beginTransaction();
-            session.merge(oldClient);
+            if (changedProperties.contains("balance")) {
+                balanceLedger.record(session, oldClient.getId(), oldClient.getBalance().subtract(oldBalance),
+                        BalanceEntry.Kind.ADJUSTMENT);
+            }
             session.getTransaction().commit();
 
             return new ResponseEntity<>(oldClient, HttpStatus.OK);
+        } catch (OptimisticLockException | StaleStateException e) {
+            return ExceptionHandler.handleInfoException(ResponseMessage.CLIENT_WAS_MODIFIED, HttpStatus.CONFLICT);
         } catch (Exception e) {
             return ExceptionHandler.handleServerException(e);
         }
     }
 
-    public ResponseEntity<?> deleteClient(String idClientJSON) {
+    public ResponseEntity<?> deleteClient(Long id) {
         try (var session = sessionController.openSession()) {
-            var idMap = new ObjectMapper().readValue(idClientJSON, Map.class);
-            Long id = new ObjectMapper().convertValue(idMap.get("id"), Long.class);
-
             Client deletedClient = session.get(Client.class, id);
             if (deletedClient == null) {
                 return ExceptionHandler.handleInfoException(ResponseMessage.CLIENT_NOT_FOUND, HttpStatus.NOT_FOUND);
             }
 
             session.beginTransaction();
+            balanceLedger.deleteEntries(session, id);
             session.remove(deletedClient);
             session.getTransaction().commit();
 
-            return new ResponseEntity<>(ResponseMessage.DELETED_SUCCESSFULLY.getJSON(), HttpStatus.OK);
+            return ExceptionHandler.handleInfoException(ResponseMessage.DELETED_SUCCESSFULLY, HttpStatus.OK);
+        } catch (OptimisticLockException | StaleStateException e) {
+            return ExceptionHandler.handleInfoException(ResponseMessage.CLIENT_WAS_MODIFIED, HttpStatus.CONFLICT);
         } catch (Exception e) {
             return ExceptionHandler.handleServerException(e);
         }
     }
 
-    private String hashPassword(String password) {
+    static String hashPassword(String password) {
         MessageDigest digest;
         try {
             digest = MessageDigest.getInstance("SHA-256");
@@ -191,7 +234,7 @@ public class ClientService {
         }
     }
 
-    private String bytesToHex(byte[] hash) {
+    static String bytesToHex(byte[] hash) {
         StringBuilder hexString = new StringBuilder();
         for (byte b : hash) {
             String hex = Integer.toHexString(0xff & b);
@@ -0,0 +1,84 @@
+package org.example.service;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Copies changed properties from an edited entity onto the loaded one. The getter/setter pairs are looked up once
+ * per entity class, so an edit costs one handle call per property instead of a reflective method scan.
+ */
+final class EntityMerger<T> {
+    private record Property(String name, MethodHandle getter, MethodHandle setter) {
+    }
+
+    private final List<Property> properties = new ArrayList<>();
+
+    EntityMerger(Class<T> entityClass, String... skippedProperties) {
+        var skipped = Set.of(skippedProperties);
+        var lookup = MethodHandles.publicLookup();
+
+        try {
+            for (var getter : entityClass.getMethods()) {
+                if (!getter.getName().startsWith("get") || getter.getParameterCount() != 0
+                        || Modifier.isStatic(getter.getModifiers()) || getter.getDeclaringClass() == Object.class) {
+                    continue;
+                }
+
+                var propertyName = Character.toLowerCase(getter.getName().charAt(3)) + getter.getName().substring(4);
+                if (skipped.contains(propertyName)) {
+                    continue;
+                }
+
+                var setterName = "set" + getter.getName().substring(3);
+                var setter = entityClass.getMethod(setterName, getter.getReturnType());
+                properties.add(new Property(propertyName, lookup.unreflect(getter), lookup.unreflect(setter)));
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("Cannot build property table of " + entityClass.getName(), e);
+        }
+    }
+
+    // returns the names of the properties that were changed on target
+    Set<String> merge(T target, T source) {
+        Set<String> dirtyProperties = new LinkedHashSet<>();
+
+        try {
+            for (var property : properties) {
+                var newValue = property.getter().invoke(source);
+                if (!sameValue(property.getter().invoke(target), newValue)) {
+                    property.setter().invoke(target, newValue);
+                    dirtyProperties.add(property.name());
+                }
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+
+        return dirtyProperties;
+    }
+
+    // numbers are compared by value, as Hibernate does, so "150" and "150.00" are not a change
+    private static boolean sameValue(Object oldValue, Object newValue) {
+        if (oldValue instanceof BigDecimal oldNumber && newValue instanceof BigDecimal newNumber) {
+            return oldNumber.compareTo(newNumber) == 0;
+        }
+        if (oldValue instanceof Object[] oldArray && newValue instanceof Object[] newArray) {
+            if (oldArray.length != newArray.length) {
+                return false;
+            }
+            for (int i = 0; i < oldArray.length; i++) {
+                if (!sameValue(oldArray[i], newArray[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        return Objects.equals(oldValue, newValue);
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped in-process locks keyed by house id. Bookings of the same house queue here instead of on the database row
+ * lock, while bookings of different houses mostly take different stripes and run in parallel.
+ */
+final class HouseLocks {
+    private static final int STRIPES = 64; // power of two
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    HouseLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    ReentrantLock lockFor(Long houseId) {
+        return locks[stripe(houseId)];
+    }
+
+    // the distinct locks of the houses in stripe order; taken in this order, batches cannot deadlock each other
+    List<ReentrantLock> locksFor(Collection<Long> houseIds) {
+        var stripes = new TreeSet<Integer>();
+        houseIds.forEach(houseId -> stripes.add(stripe(houseId)));
+        return stripes.stream().map(stripe -> locks[stripe]).toList();
+    }
+
+    private static int stripe(Long houseId) {
+        int hash = Long.hashCode(houseId);
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
@@ -1,23 +1,35 @@
 package org.example.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.LockModeType;
 import org.example.ExceptionHandler.ExceptionHandler;
+import org.example.bulk.HouseFormat;
+import org.example.bulk.HouseImporter;
 import org.example.hibernateController.HibernateSessionController;
+import org.example.index.HouseAvailabilityIndex;
+import org.example.index.HouseCalendarIndex;
+import org.example.index.HouseSpatialIndex;
 import org.example.model.House;
+import org.example.query.FreeHouseCriteria;
+import org.example.response.JsonArrayWriter;
 import org.example.response.ResponseMessage;
+import org.example.rollup.RentalRollups;
+import org.hibernate.Session;
 import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.*;
 
 @Service
 @SuppressWarnings("unused")
@@ -25,18 +37,96 @@ public class HouseService {
     private record Houses(List<House> houses) {
     }
 
+    private record HousesPage(List<House> houses, Long nextAfterId) {
+    }
+
+    private record NearbyHouses(List<HouseSpatialIndex.Neighbour> houses) {
+    }
+
+    // the dates are maintained by the service, not taken from the request
+    private static final EntityMerger<House> HOUSE_MERGER =
+            new EntityMerger<>(House.class, "id", "additionDate", "lastChangeDate");
+
     @Autowired
     private HibernateSessionController sessionController;
 
-    public ResponseEntity<?> getAllHouses() {
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private HouseAvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private HouseSpatialIndex spatialIndex;
+
+    @Autowired
+    private HouseCalendarIndex calendarIndex;
+
+    @Autowired
+    private HouseImporter houseImporter;
+
+    @Autowired
+    private RentalRollups rentalRollups;
+
+    public ResponseEntity<?> getAllHouses(Long afterId, Integer limit) {
         try (var session = sessionController.openSession()) {
-            List<House> houses = session.createQuery("from House", House.class).list();
+            if (afterId != null || limit != null) {
+                return getHousesPage(session, Pagination.afterId(afterId), Pagination.pageSize(limit));
+            }
+
+            List<House> houses = session.createQuery("from House", House.class)
+                    .setCacheable(true)
+                    .setCacheRegion("house-queries")
+                    .list();
             return new ResponseEntity<>(new Houses(houses), HttpStatus.OK);
         } catch (Exception e) {
             return ExceptionHandler.handleServerException(e);
         }
     }
 
+    private ResponseEntity<?> getHousesPage(Session session, long afterId, int pageSize) {
+        var houses = session.createQuery("from House where id > :afterId order by id", House.class)
+                .setParameter("afterId", afterId)
+                .setMaxResults(pageSize)
+                .list();
+
+        Long lastId = houses.isEmpty() ? null : houses.get(houses.size() - 1).getId();
+        return new ResponseEntity<>(new HousesPage(houses, Pagination.nextAfterId(pageSize, houses.size(), lastId)),
+                HttpStatus.OK);
+    }
+
+    public ResponseEntity<StreamingResponseBody> streamAllHouses() {
+        StreamingResponseBody body = outputStream -> sessionController.streamQuery(
+                "from House order by id", House.class,
+                houses -> JsonArrayWriter.write(objectMapper, outputStream, "houses", houses));
+
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+    public ResponseEntity<StreamingResponseBody> exportHouses(HouseFormat format) {
+        StreamingResponseBody body = outputStream -> sessionController.streamQuery(
+                "from House order by id", House.class,
+                houses -> format.write(objectMapper, outputStream, houses));
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.mediaType() + ";charset=UTF-8"))
+                .body(body);
+    }
+
+    public ResponseEntity<?> importHouses(HouseFormat format, InputStream input) {
+        try {
+            var result = houseImporter.importHouses(format, input, houses -> houses.forEach(house -> {
+                availabilityIndex.putHouse(house);
+                spatialIndex.putHouse(house);
+            }));
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return ExceptionHandler.handleUserException(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return ExceptionHandler.handleServerException(e);
+        }
+    }
+
     public ResponseEntity<?> getHouseById(Long id) {
         try (var session = sessionController.openSession()) {
             var house = session.get(House.class, id);
@@ -50,33 +140,168 @@ public class HouseService {
         }
     }
 
-    private String freeHousesQuery(String comfortClass, List<String> districts) {
-        var queryBuilder = new StringBuilder("SELECT * FROM FreeHouse");
+    public ResponseEntity<?> getFreeHousesByParams(FreeHouseCriteria criteria) {
+        if (availabilityIndex.isLoaded()) {
+            var houses = availabilityIndex.findFree(criteria);
+            if (houses.isEmpty()) { // if houses not found
+                return ExceptionHandler.handleInfoException(ResponseMessage.HOUSES_NOT_FOUND, HttpStatus.NOT_FOUND);
+            }
 
-        // if comfort class specified
-        if (comfortClass != null && !comfortClass.isEmpty()) {
-            queryBuilder.append(" AND comfort_class ILIKE '").append(comfortClass).append("'");
+            return new ResponseEntity<>(new Houses(houses), HttpStatus.OK);
         }
 
-        // if districts specified
-        if (districts != null && !districts.isEmpty()) {
-            queryBuilder.append(" AND (");
-            for (int i = 0; i < districts.size(); i++) {
-                queryBuilder.append("district ILIKE '").append(districts.get(i)).append("'");
-                if (i != districts.size() - 1) {
-                    queryBuilder.append(" OR ");
-                }
+        try (var session = sessionController.openSession()) {
+            var houses = criteria.toQuery(session).list();
+
+            if (houses.isEmpty()) { // if houses not found
+                return ExceptionHandler.handleInfoException(ResponseMessage.HOUSES_NOT_FOUND, HttpStatus.NOT_FOUND);
             }
-            queryBuilder.append(")");
+
+            return new ResponseEntity<>(new Houses(houses), HttpStatus.OK);
+        } catch (Exception e) {
+            return ExceptionHandler.handleServerException(e);
         }
+    }
 
-        return queryBuilder.toString();
+    // houses without a deal overlapping [from, to); the index only tracks bookings that have not ended, so it can
+    // answer ranges starting now or later and the database answers the others
+    public ResponseEntity<?> getFreeHousesBetween(FreeHouseCriteria criteria, Timestamp from, Timestamp to) {
+        if (availabilityIndex.isLoaded() && from.getTime() >= System.currentTimeMillis()) {
+            var houses = availabilityIndex.findFree(criteria, from.getTime(), to.getTime());
+            if (houses.isEmpty()) { // if houses not found
+                return ExceptionHandler.handleInfoException(ResponseMessage.HOUSES_NOT_FOUND, HttpStatus.NOT_FOUND);
+            }
+
+            return new ResponseEntity<>(new Houses(houses), HttpStatus.OK);
+        }
+
+        try (var session = sessionController.openSession()) {
+            var houses = criteria.toQuery(session, from, to).list();
+
+            if (houses.isEmpty()) { // if houses not found
+                return ExceptionHandler.handleInfoException(ResponseMessage.HOUSES_NOT_FOUND, HttpStatus.NOT_FOUND);
+            }
+
+            return new ResponseEntity<>(new Houses(houses), HttpStatus.OK);
+        } catch (Exception e) {
+            return ExceptionHandler.handleServerException(e);
+        }
     }
 
-    public ResponseEntity<?> getFreeHousesByParams(String comfortClass, List<String> districts) {
+    public ResponseEntity<?> getHouseAvailability(Long id, Timestamp from, Timestamp to) {
+        record Availability(Long idHouse, LocalDateTime from, LocalDateTime to, boolean free) {
+        }
+
+        // as in getFreeHousesBetween, ended deals are only in the database
+        if (availabilityIndex.isLoaded() && from.getTime() >= System.currentTimeMillis()) {
+            if (!availabilityIndex.isKnown(id)) {
+                return ExceptionHandler.handleInfoException(ResponseMessage.HOUSE_NOT_FOUND, HttpStatus.NOT_FOUND);
+            }
+
+            var free = availabilityIndex.isFree(id, from.getTime(), to.getTime(), null);
+            return new ResponseEntity<>(new Availability(id, from.toLocalDateTime(), to.toLocalDateTime(), free),
+                    HttpStatus.OK);
+        }
+
         try (var session = sessionController.openSession()) {
-            var houses = session.createNativeQuery(freeHousesQuery(comfortClass, districts), House.class).list();
+            if (session.get(House.class, id) == null) {
+                return ExceptionHandler.handleInfoException(ResponseMessage.HOUSE_NOT_FOUND, HttpStatus.NOT_FOUND);
+            }
+
+            var overlapping = session.createQuery("select count(*) from Rented_House "
+                            + "where idHouse = :idHouse and rentalStartDate < :to and rentalEndDate > :from", Long.class)
+                    .setParameter("idHouse", id)
+                    .setParameter("from", from)
+                    .setParameter("to", to)
+                    .uniqueResult();
+
+            return new ResponseEntity<>(new Availability(id, from.toLocalDateTime(), to.toLocalDateTime(),
+                    overlapping == 0), HttpStatus.OK);
+        } catch (Exception e) {
+            return ExceptionHandler.handleServerException(e);
+        }
+    }
+
+    // booked days of [from, to) per house: bit i of 'booked' (byte i / 8, bit i % 8) is day from + i, unknown houses
+    // are left out
+    public ResponseEntity<?> getHouseCalendars(List<Long> ids, LocalDate from, LocalDate to) {
+        record HouseCalendar(Long idHouse, int bookedDays, String booked) {
+        }
+
+        record HouseCalendars(LocalDate from, LocalDate to, int days, List<HouseCalendar> houses) {
+        }
+
+        int days = (int) (to.toEpochDay() - from.toEpochDay());
+        var houseIds = new TreeSet<>(ids);
+        Map<Long, BitSet> bookedDays = new LinkedHashMap<>();
+
+        if (availabilityIndex.isLoaded() && calendarIndex.isLoaded()) {
+            for (var id : houseIds) {
+                if (availabilityIndex.isKnown(id)) {
+                    bookedDays.put(id, calendarIndex.bookedDays(id, from, to));
+                }
+            }
+        } else {
+            try (var session = sessionController.openSession()) {
+                session.createQuery("select id from House where id in :ids order by id", Long.class)
+                        .setParameter("ids", houseIds)
+                        .list()
+                        .forEach(id -> bookedDays.put(id, new BitSet(days)));
+
+                var deals = session.createQuery("select idHouse, rentalStartDate, rentalEndDate from Rented_House "
+                                + "where idHouse in :ids and rentalStartDate < :to and rentalEndDate > :from", Object[].class)
+                        .setParameter("ids", houseIds)
+                        .setParameter("from", Timestamp.from(from.atStartOfDay(HouseCalendarIndex.ZONE).toInstant()))
+                        .setParameter("to", Timestamp.from(to.atStartOfDay(HouseCalendarIndex.ZONE).toInstant()))
+                        .list();
+                for (var deal : deals) {
+                    var booked = bookedDays.get((Long) deal[0]);
+                    if (booked != null) {
+                        HouseCalendarIndex.markBooked(booked, from, to, (Timestamp) deal[1], (Timestamp) deal[2]);
+                    }
+                }
+            } catch (Exception e) {
+                return ExceptionHandler.handleServerException(e);
+            }
+        }
 
+        List<HouseCalendar> calendars = new ArrayList<>(bookedDays.size());
+        var encoder = Base64.getEncoder();
+        bookedDays.forEach((id, booked) -> calendars.add(new HouseCalendar(id, booked.cardinality(),
+                encoder.encodeToString(Arrays.copyOf(booked.toByteArray(), (days + 7) / 8)))));
+
+        return new ResponseEntity<>(new HouseCalendars(from, to, days, calendars), HttpStatus.OK);
+    }
+
+    public ResponseEntity<?> getNearHouses(double lat, double lon, Double radiusKm, Integer count) {
+        try {
+            if (!spatialIndex.isLoaded()) {
+                spatialIndex.load();
+            }
+
+            var houses = radiusKm != null
+                    ? spatialIndex.withinRadius(lat, lon, radiusKm)
+                    : spatialIndex.nearest(lat, lon, count);
+            if (radiusKm != null && count != null && houses.size() > count) {
+                houses = houses.subList(0, count);
+            }
+            if (houses.isEmpty()) { // if houses not found
+                return ExceptionHandler.handleInfoException(ResponseMessage.HOUSES_NOT_FOUND, HttpStatus.NOT_FOUND);
+            }
+
+            return new ResponseEntity<>(new NearbyHouses(houses), HttpStatus.OK);
+        } catch (Exception e) {
+            return ExceptionHandler.handleServerException(e);
+        }
+    }
+
+    public ResponseEntity<?> getHousesInBox(double minLat, double minLon, double maxLat, double maxLon) {
+        try {
+            if (!spatialIndex.isLoaded()) {
+                spatialIndex.load();
+            }
+
+            var houses = spatialIndex.withinBox(minLat, minLon, maxLat, maxLon);
             if (houses.isEmpty()) { // if houses not found
                 return ExceptionHandler.handleInfoException(ResponseMessage.HOUSES_NOT_FOUND, HttpStatus.NOT_FOUND);
             }
@@ -97,6 +322,8 @@ public class HouseService {
             session.beginTransaction();
             session.persist(newHouse);
             session.getTransaction().commit();
+            availabilityIndex.putHouse(newHouse);
+            spatialIndex.putHouse(newHouse);
 
             return new ResponseEntity<>(newHouse, HttpStatus.CREATED);
         } catch (ConstraintViolationException e) {
@@ -108,34 +335,32 @@ public class HouseService {
 
     public ResponseEntity<?> editHouse(House editHouse) {
         try (var session = sessionController.openSession()) {
-            House oldHouse = session.get(House.class, editHouse.getId());
-            if (oldHouse.equals(editHouse)) {
-                return ExceptionHandler.handleInfoException(ResponseMessage.NO_DIFFERENCE_BETWEEN_DATA, HttpStatus.CONFLICT);
-            }
+            session.beginTransaction();
 
-            try {
-                // search for the necessary set methods
-                var methods = oldHouse.getClass().getMethods();
-                for (var method : methods) {
-                    if (method.getName().startsWith("get") && method.getParameterTypes().length == 0
-                            && !void.class.equals(method.getReturnType())) {
-                        if (!Objects.equals(method.invoke(oldHouse), method.invoke(editHouse))) {
-                            var setterName = method.getName().replace("get", "set");
-                            var setter = House.class.getMethod(setterName, method.getReturnType());
-                            setter.invoke(oldHouse, method.invoke(editHouse));
-                        }
-                    }
-                }
+            // the row lock of deal writes, so no deal is counted in the rollups under the values being replaced
+            House oldHouse = editHouse.getId() == null ? null
+                    : session.find(House.class, editHouse.getId(), LockModeType.PESSIMISTIC_WRITE);
+            if (oldHouse == null) {
+                session.getTransaction().rollback();
+                return ExceptionHandler.handleInfoException(ResponseMessage.HOUSE_NOT_FOUND, HttpStatus.NOT_FOUND);
+            }
+            var districtBefore = oldHouse.getDistrict();
+            var comfortClassBefore = oldHouse.getComfortClass();
 
-                oldHouse.setLastChangeDate(Timestamp.valueOf(LocalDateTime.now(ZoneId.of("Europe/Moscow"))
-                        .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS"))));
-            } catch (Exception e) {
-                return ExceptionHandler.handleServerException(e);
+            var changedProperties = HOUSE_MERGER.merge(oldHouse, editHouse);
+            if (changedProperties.isEmpty()) {
+                session.getTransaction().rollback();
+                return ExceptionHandler.handleInfoException(ResponseMessage.NO_DIFFERENCE_BETWEEN_DATA, HttpStatus.CONFLICT);
             }
 
-            session.beginTransaction();
-            session.merge(oldHouse);
+            oldHouse.setLastChangeDate(Timestamp.valueOf(LocalDateTime.now(ZoneId.of("Europe/Moscow"))
+                    .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS"))));
+
+            rentalRollups.houseChanged(session, oldHouse, districtBefore, comfortClassBefore);
+            // oldHouse is managed, the flush on commit updates only the changed columns (@DynamicUpdate)
             session.getTransaction().commit();
+            availabilityIndex.putHouse(oldHouse);
+            spatialIndex.putHouse(oldHouse);
 
             return new ResponseEntity<>(oldHouse, HttpStatus.OK);
         } catch (Exception e) {
@@ -143,11 +368,8 @@ public class HouseService {
         }
     }
 
-    public ResponseEntity<?> deleteHouse(String idHouseJSON) {
+    public ResponseEntity<?> deleteHouse(Long id) {
         try (var session = sessionController.openSession()) {
-            var idMap = new ObjectMapper().readValue(idHouseJSON, Map.class);
-            Long id = new ObjectMapper().convertValue(idMap.get("id"), Long.class);
-
             House deletedHouse = session.get(House.class, id);
             if (deletedHouse == null) {
                 return ExceptionHandler.handleInfoException(ResponseMessage.HOUSE_NOT_FOUND, HttpStatus.NOT_FOUND);
@@ -156,8 +378,11 @@ public class HouseService {
             session.beginTransaction();
             session.remove(deletedHouse);
             session.getTransaction().commit();
+            availabilityIndex.removeHouse(id);
+            calendarIndex.removeHouse(id);
+            spatialIndex.removeHouse(id);
 
-            return new ResponseEntity<>(ResponseMessage.DELETED_SUCCESSFULLY.getJSON(), HttpStatus.OK);
+            return ExceptionHandler.handleInfoException(ResponseMessage.DELETED_SUCCESSFULLY, HttpStatus.OK);
         } catch (Exception e) {
             return ExceptionHandler.handleServerException(e);
         }
@@ -0,0 +1,22 @@
+package org.example.service;
+
+final class Pagination {
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private Pagination() {
+    }
+
+    static long afterId(Long afterId) {
+        return afterId == null ? 0L : afterId;
+    }
+
+    static int pageSize(Integer limit) {
+        return limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    // id to pass as 'after-id' for the next page, null when this page was the last one
+    static Long nextAfterId(int pageSize, int returned, Long lastId) {
+        return returned < pageSize ? null : lastId;
+    }
+}
@@ -1,26 +1,37 @@
 package org.example.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.LockModeType;
 import org.example.ExceptionHandler.ExceptionHandler;
+import org.example.expiry.RentalExpiry;
 import org.example.hibernateController.HibernateSessionController;
+import org.example.index.HouseAvailabilityIndex;
+import org.example.index.HouseCalendarIndex;
 import org.example.model.House;
 import org.example.model.RentedHouse;
+import org.example.request.ExtendDealRequest;
+import org.example.response.JsonArrayWriter;
 import org.example.response.ResponseMessage;
+import org.example.rollup.RentalRollups;
+import org.hibernate.Session;
 import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.type.StandardBasicTypes;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.List;
-import java.util.Map;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 @Service
 @SuppressWarnings("unused")
@@ -28,13 +39,64 @@ public class RentedHouseService {
     private record RentedHouses(List<RentedHouse> rentedHouses) {
     }
 
+    private record RentedHousesPage(List<RentedHouse> rentedHouses, Long nextAfterId) {
+    }
+
+    private enum DealStatus {
+        CREATED, HOUSE_NOT_FOUND, CLIENT_NOT_FOUND, HOUSE_ALREADY_BOOKED,
+        NOT_CREATED // could be booked, but another deal of an all-or-nothing batch could not
+    }
+
+    // index is the position of the deal in the request, deal is set for created deals
+    private record DealResult(int index, DealStatus status, RentedHouse deal) {
+    }
+
+    private record DealBatch(int created, int failed, List<DealResult> results) {
+    }
+
+    // a deal of an accepted batch by content, see insertDeals
+    private record DealKey(long idHouse, long idClient, long rentalStart) {
+        static DealKey of(RentedHouse deal) {
+            return new DealKey(deal.getIdHouse(), deal.getIdClient(), deal.getRentalStartDate().getTime());
+        }
+    }
+
+    private static final String INSERT_DEALS_PREFIX = """
+            INSERT INTO rented_house (id_house, id_client, rental_start_date, rental_duration, rental_end_date,
+                                      total_amount, active)
+            VALUES\s""";
+
+    private static final String INSERT_DEAL_ROW =
+            "(:idHouse%1$d, :idClient%1$d, :rentalStartDate%1$d, :rentalDuration%1$d, :rentalEndDate%1$d, "
+                    + ":totalAmount%1$d, :active%1$d)";
+
     @Autowired
     private HibernateSessionController sessionController;
 
-    public ResponseEntity<?> getRentedHousesByPeriod(String period, String startPeriodDate) {
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private HouseAvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private HouseCalendarIndex calendarIndex;
+
+    @Autowired
+    private RentalRollups rentalRollups;
+
+    @Autowired
+    private RentalExpiry rentalExpiry;
+
+    private final HouseLocks houseLocks = new HouseLocks();
+
+    public ResponseEntity<?> getRentedHousesByPeriod(String period, String startPeriodDate, Long afterId, Integer limit) {
         try (var session = sessionController.openSession()) {
             DateTimeFormatter dateTimeFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
 
+            if (period == null && (afterId != null || limit != null)) {
+                return getRentedHousesPage(session, Pagination.afterId(afterId), Pagination.pageSize(limit));
+            }
             if (period == null) {
                 List<RentedHouse> houses = session.createQuery("from Rented_House", RentedHouse.class).list();
                 return new ResponseEntity<>(new RentedHouses(houses), HttpStatus.OK);
@@ -80,50 +142,51 @@ public class RentedHouseService {
         }
     }
 
-    private <T> T executeUserAvgInfoQuery(String queryString, Long id, Class<T> resultType) {
+    // deal count, revenue and rental days of a calendar day, month or year, read from the rollups
+    public ResponseEntity<?> getRentalRollup(String period, String date) {
         try (var session = sessionController.openSession()) {
-            var query = session.createQuery(queryString, resultType);
-            query.setParameter("id", id);
-
-            return query.uniqueResult();
+            var day = date == null ? LocalDate.now() : LocalDate.parse(date);
+            return new ResponseEntity<>(rentalRollups.report(session, period, day), HttpStatus.OK);
+        } catch (DateTimeParseException e) {
+            return ExceptionHandler.handleUserException("'date' must be in the format yyyy-MM-dd",
+                    HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
-            return null;
+            return ExceptionHandler.handleServerException(e);
         }
     }
 
-    private Long getUserTransactionsCount(Long id) {
-        String transactionsCountQuery = "SELECT COUNT(*) FROM Rented_House WHERE idClient = :id";
-        return executeUserAvgInfoQuery(transactionsCountQuery, id, Long.class);
-    }
-
-    private BigDecimal getUserAvgMoney(Long id) {
-        String avgMoneyQuery = "SELECT AVG(totalAmount) FROM Rented_House WHERE idClient = :id";
-        Double avgMoney = executeUserAvgInfoQuery(avgMoneyQuery, id, Double.class);
-        return (avgMoney != null) ? new BigDecimal(avgMoney.toString()) : null;
-    }
+    private ResponseEntity<?> getRentedHousesPage(Session session, long afterId, int pageSize) {
+        var houses = session.createQuery("from Rented_House where id > :afterId order by id", RentedHouse.class)
+                .setParameter("afterId", afterId)
+                .setMaxResults(pageSize)
+                .list();
 
-    private RentedHouse getUserLastBiggestDeal(Long id) {
-        String lastBiggestDealQuery = "from Rented_House where idClient = :id and totalAmount = (" +
-                "select max(totalAmount) from Rented_House where idClient = :id) " +
-                "order by totalAmount desc limit 1";
-        return executeUserAvgInfoQuery(lastBiggestDealQuery, id, RentedHouse.class);
+        Long lastId = houses.isEmpty() ? null : houses.get(houses.size() - 1).getId();
+        return new ResponseEntity<>(new RentedHousesPage(houses, Pagination.nextAfterId(pageSize, houses.size(), lastId)),
+                HttpStatus.OK);
     }
 
-    private BigDecimal getUserTotalMoney(Long id) {
-        String totalMoneyQuery = "SELECT SUM(totalAmount) FROM Rented_House WHERE idClient = :id";
-        return executeUserAvgInfoQuery(totalMoneyQuery, id, BigDecimal.class);
-    }
+    public ResponseEntity<StreamingResponseBody> streamAllRentedHouses() {
+        StreamingResponseBody body = outputStream -> sessionController.streamQuery(
+                "from Rented_House order by id", RentedHouse.class,
+                houses -> JsonArrayWriter.write(objectMapper, outputStream, "rentedHouses", houses));
 
-    private Long getUserTotalRentalPeriod(Long id) {
-        String totalRentalPeriodQuery = "SELECT SUM(rentalDuration) FROM Rented_House WHERE idClient = :id";
-        return executeUserAvgInfoQuery(totalRentalPeriodQuery, id, Long.class);
+        return new ResponseEntity<>(body, HttpStatus.OK);
     }
 
-    private Long getUserCurrentTransactionsNumber(Long id) {
-        String totalCurrentTransactionsNumberQuery = "SELECT COUNT(*) FROM Rented_House WHERE idClient = :id " +
-                "AND rentalEndDate > CURRENT_TIMESTAMP";
-        return executeUserAvgInfoQuery(totalCurrentTransactionsNumberQuery, id, Long.class);
-    }
+    // all user statistics in one pass: window aggregates are computed over every deal of the client
+    // before LIMIT keeps the biggest (and latest among equal) deal row
+    private static final String USER_AVG_INFO_QUERY = """
+            SELECT {r.*},
+                   COUNT(*) OVER () AS transactions_count,
+                   COUNT(*) FILTER (WHERE r.active) OVER () AS current_transactions_number,
+                   AVG(r.total_amount) OVER () AS avg_money,
+                   SUM(r.total_amount) OVER () AS total_money,
+                   SUM(r.rental_duration) OVER () AS total_rental_period
+            FROM rented_house r
+            WHERE r.id_client = :id
+            ORDER BY r.total_amount DESC, r.rental_start_date DESC
+            LIMIT 1""";
 
     public ResponseEntity<?> getUserAvgInfo(Long id) {
         try (var session = sessionController.openSession()) {
@@ -137,18 +200,32 @@ public class RentedHouseService {
                 // общий срок аренды
             }
 
+            var row = session.createNativeQuery(USER_AVG_INFO_QUERY, Object[].class)
+                    .addEntity("r", RentedHouse.class)
+                    .addScalar("transactions_count", StandardBasicTypes.LONG)
+                    .addScalar("current_transactions_number", StandardBasicTypes.LONG)
+                    .addScalar("avg_money", StandardBasicTypes.DOUBLE)
+                    .addScalar("total_money", StandardBasicTypes.BIG_DECIMAL)
+                    .addScalar("total_rental_period", StandardBasicTypes.LONG)
+                    .setParameter("id", id)
+                    .uniqueResult();
+
+            if (row == null) { // if client has no deals
+                return new ResponseEntity<>(new UserInfo(0L, 0L, null, null, null, null), HttpStatus.OK);
+            }
+
             // кол-во сделок
-            var transactionsCount = getUserTransactionsCount(id);
+            var transactionsCount = (Long) row[1];
             // текущее кол-во домов в аренде
-            var currentTransactionsNumber = getUserCurrentTransactionsNumber(id);
+            var currentTransactionsNumber = (Long) row[2];
             // средняя сумма сделки
-            var avgMoney = getUserAvgMoney(id);
+            var avgMoney = new BigDecimal(row[3].toString());
             // самая крупная сделка
-            var lastBiggestDeal = getUserLastBiggestDeal(id);
+            var lastBiggestDeal = (RentedHouse) row[0];
             // всего потрачено денег
-            var totalMoney = getUserTotalMoney(id);
+            var totalMoney = (BigDecimal) row[4];
             // общий срок аренды
-            var totalRentalPeriod = getUserTotalRentalPeriod(id);
+            var totalRentalPeriod = (Long) row[5];
 
             return new ResponseEntity<>(new UserInfo(transactionsCount, currentTransactionsNumber, avgMoney,
                     lastBiggestDeal, totalMoney, totalRentalPeriod), HttpStatus.OK);
@@ -173,8 +250,10 @@ public class RentedHouseService {
         try (var session = sessionController.openSession()) {
             DateTimeFormatter dateTimeFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
 
-            String userHousesInfoQuery = "FROM Rented_House r WHERE r.idClient = :id";
-            var queryTotalRental = session.createQuery(userHousesInfoQuery, RentedHouse.class);
+            // deals and their houses in one round trip
+            String userHousesInfoQuery = "SELECT r, h FROM Rented_House r JOIN House h ON h.id = r.idHouse " +
+                    "WHERE r.idClient = :id";
+            var queryTotalRental = session.createQuery(userHousesInfoQuery, Object[].class);
             queryTotalRental.setParameter("id", id);
 
             var dbDeals = queryTotalRental.list();
@@ -182,17 +261,17 @@ public class RentedHouseService {
                 return ExceptionHandler.handleInfoException(ResponseMessage.HOUSES_NOT_FOUND, HttpStatus.NOT_FOUND);
             }
 
-            List<UserDeal> deals = new ArrayList<>();
-            for (var deal : dbDeals) {
-                House house = getHouseById(deal.getIdHouse());
-                Boolean isRented = deal.getRentalEndDate().after(new Timestamp(System.currentTimeMillis()));
+            List<UserDeal> deals = new ArrayList<>(dbDeals.size());
+            for (var row : dbDeals) {
+                RentedHouse deal = (RentedHouse) row[0];
+                House house = (House) row[1];
+                Boolean isRented = deal.getActive();
 
                 UserDeal userDeal = new UserDeal(deal.getId(), house, deal.getIdClient(),
                         deal.getRentalStartDate().toString().split(" ")[0], deal.getRentalDuration(),
                         deal.getRentalEndDate().toString().split(" ")[0], deal.getTotalAmount(), isRented);
 
                 deals.add(userDeal);
-
             }
 
             return new ResponseEntity<>(new UserDealList(deals), HttpStatus.OK);
@@ -201,40 +280,40 @@ public class RentedHouseService {
         }
     }
 
-    private House getHouseById(Long id) {
-        try (var session = sessionController.openSession()) {
-            return session.get(House.class, id);
-        } catch (Exception e) {
-            return null;
+    public ResponseEntity<?> createDeal(RentedHouse newDeal) {
+        // установка дат
+        setRentalDates(newDeal);
+
+        // a range the index knows to be booked cannot become free before the check below, reject without locking
+        if (availabilityIndex.isLoaded() && availabilityIndex.isKnown(newDeal.getIdHouse())
+                && !availabilityIndex.isFree(newDeal.getIdHouse(), newDeal.getRentalStartDate().getTime(),
+                newDeal.getRentalEndDate().getTime(), null)) {
+            return ExceptionHandler.handleInfoException(ResponseMessage.HOUSE_ALREADY_BOOKED, HttpStatus.CONFLICT);
         }
-    }
 
-    public ResponseEntity<?> createDeal(RentedHouse newDeal) {
+        var houseLock = houseLocks.lockFor(newDeal.getIdHouse());
+        houseLock.lock();
         try (var session = sessionController.openSession()) {
-            DateTimeFormatter dateTimeFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
-            // проверка что дом свободен
-            var freeHouses = session.createNativeQuery("select * from FreeHouse where id = :id", House.class)
-                    .setParameter("id", newDeal.getIdHouse())
-                    .uniqueResult();
+            session.beginTransaction();
 
-            if (freeHouses == null) {
-                return ExceptionHandler.handleInfoException(ResponseMessage.DEAL_ALREADY_EXISTS, HttpStatus.CONFLICT);
+            // the row lock makes check-and-insert atomic for other application instances as well
+            var house = session.find(House.class, newDeal.getIdHouse(), LockModeType.PESSIMISTIC_WRITE);
+            if (house == null) {
+                session.getTransaction().rollback();
+                return ExceptionHandler.handleInfoException(ResponseMessage.HOUSE_NOT_FOUND, HttpStatus.NOT_FOUND);
             }
 
-            // установка дат
-            LocalDateTime currentDateTime;
-            if (newDeal.getRentalStartDate() == null) {
-                currentDateTime = LocalDateTime.now();
-                newDeal.setRentalStartDate(Timestamp.valueOf(currentDateTime));
-                newDeal.setRentalEndDate(Timestamp.valueOf(currentDateTime.plusDays(newDeal.getRentalDuration())));
-            } else {
-                currentDateTime = newDeal.getRentalStartDate().toLocalDateTime();
-                newDeal.setRentalEndDate(Timestamp.valueOf(currentDateTime.plusDays(newDeal.getRentalDuration())));
+            // проверка что дом свободен
+            if (hasOverlappingDeal(session, newDeal, null)) {
+                session.getTransaction().rollback();
+                return ExceptionHandler.handleInfoException(ResponseMessage.HOUSE_ALREADY_BOOKED, HttpStatus.CONFLICT);
             }
 
-            session.beginTransaction();
+            markActive(newDeal);
             session.persist(newDeal);
+            rentalRollups.dealChanged(session, null, RentalRollups.DealFacts.of(newDeal, house));
             session.getTransaction().commit();
+            dealSaved(newDeal);
 
             return new ResponseEntity<>(newDeal, HttpStatus.CREATED);
 
@@ -242,26 +321,302 @@ public class RentedHouseService {
             return ExceptionHandler.handleInfoException(ResponseMessage.DEAL_ALREADY_EXISTS, HttpStatus.CONFLICT);
         } catch (Exception e) {
             return ExceptionHandler.handleServerException(e);
+        } finally {
+            houseLock.unlock();
         }
     }
 
-    public ResponseEntity<?> editDeal(RentedHouse editedDeal) {
+    /**
+     * Books many houses in one transaction: the house rows are locked by one query, the dates are checked against
+     * the existing deals by one query and the deals are written by one multi-row INSERT. Deals of the batch that
+     * overlap an earlier deal of the batch count as booked.
+     */
+    public ResponseEntity<?> createDeals(List<RentedHouse> deals, boolean partial) {
+        deals.forEach(RentedHouseService::setRentalDates);
+        var statuses = new DealStatus[deals.size()];
+
+        // as in createDeal, ranges the index knows to be booked are rejected without locking
+        if (availabilityIndex.isLoaded()) {
+            for (int i = 0; i < deals.size(); i++) {
+                var deal = deals.get(i);
+                if (availabilityIndex.isKnown(deal.getIdHouse()) && !availabilityIndex.isFree(deal.getIdHouse(),
+                        deal.getRentalStartDate().getTime(), deal.getRentalEndDate().getTime(), null)) {
+                    statuses[i] = DealStatus.HOUSE_ALREADY_BOOKED;
+                }
+            }
+            if (!partial && Arrays.stream(statuses).anyMatch(Objects::nonNull)) {
+                return dealBatch(statuses, List.of(), List.of());
+            }
+        }
+
+        var houseIds = new TreeSet<Long>();
+        var clientIds = new HashSet<Long>();
+        deals.forEach(deal -> {
+            houseIds.add(deal.getIdHouse());
+            clientIds.add(deal.getIdClient());
+        });
+
+        var locks = houseLocks.locksFor(houseIds);
+        locks.forEach(ReentrantLock::lock);
         try (var session = sessionController.openSession()) {
-            DateTimeFormatter dateTimeFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+            session.beginTransaction();
+
+            // rows are locked in id order, so batches and single bookings cannot deadlock in the database either
+            Map<Long, House> houses = new HashMap<>();
+            session.createQuery("from House where id in :ids order by id", House.class)
+                    .setParameter("ids", houseIds)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .list()
+                    .forEach(house -> houses.put(house.getId(), house));
+            var clients = new HashSet<>(session.createQuery("select id from Client where id in :ids", Long.class)
+                    .setParameter("ids", clientIds)
+                    .list());
+
+            checkDeals(session, deals, statuses, houses, clients);
+
+            List<RentedHouse> accepted = new ArrayList<>();
+            List<Integer> acceptedIndexes = new ArrayList<>();
+            for (int i = 0; i < deals.size(); i++) {
+                if (statuses[i] == null) {
+                    accepted.add(deals.get(i));
+                    acceptedIndexes.add(i);
+                }
+            }
+            if (accepted.isEmpty() || (!partial && accepted.size() < deals.size())) {
+                session.getTransaction().rollback();
+                return dealBatch(statuses, List.of(), List.of());
+            }
+
+            var created = insertDeals(session, accepted);
+            rentalRollups.dealsCreated(session, created.stream()
+                    .map(deal -> RentalRollups.DealFacts.of(deal, houses.get(deal.getIdHouse())))
+                    .toList());
+            session.getTransaction().commit();
+            created.forEach(this::dealSaved);
+
+            return dealBatch(statuses, acceptedIndexes, created);
 
-            LocalDateTime currentDateTime;
-            if (editedDeal.getRentalStartDate() == null) {
-                currentDateTime = LocalDateTime.now();
-                editedDeal.setRentalStartDate(Timestamp.valueOf(currentDateTime));
-                editedDeal.setRentalEndDate(Timestamp.valueOf(currentDateTime.plusDays(editedDeal.getRentalDuration())));
+        } catch (ConstraintViolationException e) {
+            return ExceptionHandler.handleInfoException(ResponseMessage.DEAL_ALREADY_EXISTS, HttpStatus.CONFLICT);
+        } catch (Exception e) {
+            return ExceptionHandler.handleServerException(e);
+        } finally {
+            locks.reversed().forEach(ReentrantLock::unlock);
+        }
+    }
+
+    // sets the status of the deals that cannot be created, the booked ranges of all houses come from one query
+    private static void checkDeals(Session session, List<RentedHouse> deals, DealStatus[] statuses,
+                                   Map<Long, House> houses, Set<Long> clients) {
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE;
+        for (var deal : deals) {
+            from = Math.min(from, deal.getRentalStartDate().getTime());
+            to = Math.max(to, deal.getRentalEndDate().getTime());
+        }
+
+        // [start, end) in milliseconds by house, deals of the batch are added as they are accepted
+        Map<Long, List<long[]>> booked = new HashMap<>();
+        session.createQuery("select idHouse, rentalStartDate, rentalEndDate from Rented_House "
+                        + "where idHouse in :ids and rentalStartDate < :to and rentalEndDate > :from", Object[].class)
+                .setParameter("ids", houses.keySet().isEmpty() ? List.of(0L) : houses.keySet()) // ids start at 1
+                .setParameter("from", new Timestamp(from))
+                .setParameter("to", new Timestamp(to))
+                .list()
+                .forEach(row -> booked.computeIfAbsent((Long) row[0], id -> new ArrayList<>())
+                        .add(new long[]{((Timestamp) row[1]).getTime(), ((Timestamp) row[2]).getTime()}));
+
+        for (int i = 0; i < deals.size(); i++) {
+            if (statuses[i] != null) {
+                continue;
+            }
+            var deal = deals.get(i);
+            if (!houses.containsKey(deal.getIdHouse())) {
+                statuses[i] = DealStatus.HOUSE_NOT_FOUND;
+                continue;
+            }
+            if (!clients.contains(deal.getIdClient())) {
+                statuses[i] = DealStatus.CLIENT_NOT_FOUND;
+                continue;
+            }
+
+            long start = deal.getRentalStartDate().getTime();
+            long end = deal.getRentalEndDate().getTime();
+            var ranges = booked.computeIfAbsent(deal.getIdHouse(), id -> new ArrayList<>());
+            if (ranges.stream().anyMatch(range -> range[0] < end && range[1] > start)) {
+                statuses[i] = DealStatus.HOUSE_ALREADY_BOOKED;
             } else {
-                currentDateTime = editedDeal.getRentalStartDate().toLocalDateTime();
-                editedDeal.setRentalEndDate(Timestamp.valueOf(currentDateTime.plusDays(editedDeal.getRentalDuration())));
+                ranges.add(new long[]{start, end});
+            }
+        }
+    }
+
+    // ids are IDENTITY values and would make Hibernate insert the deals one statement at a time
+    private static List<RentedHouse> insertDeals(Session session, List<RentedHouse> deals) {
+        var sql = new StringJoiner(", ", INSERT_DEALS_PREFIX, " RETURNING *");
+        for (int i = 0; i < deals.size(); i++) {
+            sql.add(INSERT_DEAL_ROW.formatted(i));
+        }
+
+        var query = session.createNativeQuery(sql.toString(), RentedHouse.class);
+        for (int i = 0; i < deals.size(); i++) {
+            var deal = deals.get(i);
+            markActive(deal);
+            query.setParameter("idHouse" + i, deal.getIdHouse())
+                    .setParameter("idClient" + i, deal.getIdClient())
+                    .setParameter("rentalStartDate" + i, deal.getRentalStartDate())
+                    .setParameter("rentalDuration" + i, deal.getRentalDuration())
+                    .setParameter("rentalEndDate" + i, deal.getRentalEndDate())
+                    .setParameter("totalAmount" + i, deal.getTotalAmount())
+                    .setParameter("active" + i, deal.getActive());
+        }
+
+        // the order of RETURNING rows is not guaranteed, so they are matched to the deals by content: accepted deals
+        // of one house do not overlap, rows that still share a key were written from equal deals
+        Map<DealKey, Deque<RentedHouse>> inserted = new HashMap<>();
+        query.list().forEach(deal -> inserted.computeIfAbsent(DealKey.of(deal), key -> new ArrayDeque<>()).add(deal));
+        return deals.stream().map(deal -> inserted.get(DealKey.of(deal)).poll()).toList();
+    }
+
+
+    private static ResponseEntity<?> dealBatch(DealStatus[] statuses, List<Integer> createdIndexes,
+                                               List<RentedHouse> created) {
+        var results = new DealResult[statuses.length];
+        for (int i = 0; i < createdIndexes.size(); i++) {
+            results[createdIndexes.get(i)] = new DealResult(createdIndexes.get(i), DealStatus.CREATED, created.get(i));
+        }
+        int failed = 0;
+        for (int i = 0; i < statuses.length; i++) {
+            if (results[i] == null) {
+                results[i] = new DealResult(i, statuses[i] == null ? DealStatus.NOT_CREATED : statuses[i], null);
+                failed++;
             }
+        }
+
+        return new ResponseEntity<>(new DealBatch(created.size(), failed, List.of(results)),
+                created.isEmpty() ? HttpStatus.CONFLICT : HttpStatus.CREATED);
+    }
+
+    // the rental starts now when no start date is given
+    private static void setRentalDates(RentedHouse deal) {
+        var start = deal.getRentalStartDate() == null
+                ? LocalDateTime.now()
+                : deal.getRentalStartDate().toLocalDateTime();
+        // PostgreSQL keeps microseconds, so the dates of the deal equal the stored ones
+        start = start.truncatedTo(ChronoUnit.MICROS);
+        deal.setRentalStartDate(Timestamp.valueOf(start));
+        deal.setRentalEndDate(Timestamp.valueOf(start.plusDays(deal.getRentalDuration())));
+    }
+
+    // a deal written with an end in the past is inactive right away, RentalExpiry deactivates the others when they end
+    private static void markActive(RentedHouse deal) {
+        deal.setActive(deal.getRentalEndDate().getTime() > System.currentTimeMillis());
+    }
 
+    // in-memory state follows the committed deal
+    private void dealSaved(RentedHouse deal) {
+        availabilityIndex.putDeal(deal);
+        calendarIndex.putDeal(deal);
+        rentalExpiry.schedule(deal);
+    }
+
+    // another deal of the house overlaps [rentalStartDate, rentalEndDate) of the deal, excludedDealId may be null
+    private static boolean hasOverlappingDeal(Session session, RentedHouse deal, Long excludedDealId) {
+        return session.createQuery("select count(*) from Rented_House where idHouse = :idHouse "
+                        + "and rentalStartDate < :end and rentalEndDate > :start and id <> :excludedDealId", Long.class)
+                .setParameter("idHouse", deal.getIdHouse())
+                .setParameter("start", deal.getRentalStartDate())
+                .setParameter("end", deal.getRentalEndDate())
+                .setParameter("excludedDealId", excludedDealId == null ? 0L : excludedDealId) // ids start at 1
+                .uniqueResult() > 0;
+    }
+
+    public ResponseEntity<?> editDeal(RentedHouse editedDeal) {
+        setRentalDates(editedDeal);
+        return withDealHouseLocks(editedDeal.getId(), editedDeal.getIdHouse(),
+                dealHouseId -> editDealLocked(editedDeal, dealHouseId));
+    }
+
+    public ResponseEntity<?> extendDeal(ExtendDealRequest extendRequest) {
+        return withDealHouseLocks(extendRequest.idRentedHouse(), null,
+                dealHouseId -> extendDealLocked(extendRequest, dealHouseId));
+    }
+
+    /**
+     * Runs action under the in-process locks of the deal's house and of otherHouseId, as createDeal does, so the
+     * in-memory indexes receive the versions of a deal in commit order. The deal may move to another house between
+     * reading its house and taking the locks; action then returns null and is run again.
+     */
+    private ResponseEntity<?> withDealHouseLocks(Long dealId, Long otherHouseId,
+                                                 Function<Long, ResponseEntity<?>> action) {
+        while (true) {
+            Long dealHouseId;
+            try (var session = sessionController.openSession()) {
+                dealHouseId = dealId == null ? null
+                        : session.createQuery("select idHouse from Rented_House where id = :id", Long.class)
+                        .setParameter("id", dealId)
+                        .uniqueResult();
+            } catch (Exception e) {
+                return ExceptionHandler.handleServerException(e);
+            }
+
+            var houseIds = new TreeSet<Long>();
+            if (dealHouseId != null) {
+                houseIds.add(dealHouseId);
+            }
+            if (otherHouseId != null) {
+                houseIds.add(otherHouseId);
+            }
+
+            var locks = houseLocks.locksFor(houseIds);
+            locks.forEach(ReentrantLock::lock);
+            try {
+                var response = action.apply(dealHouseId);
+                if (response != null) {
+                    return response;
+                }
+            } finally {
+                locks.reversed().forEach(ReentrantLock::unlock);
+            }
+        }
+    }
+
+    // null when the deal is no longer on dealHouseId
+    private ResponseEntity<?> editDealLocked(RentedHouse editedDeal, Long dealHouseId) {
+        try (var session = sessionController.openSession()) {
             session.beginTransaction();
-            session.merge(editedDeal);
+
+            // the previous state is taken out of the rollups, the lock keeps concurrent edits from both using it
+            RentalRollups.DealFacts before = null;
+            if (editedDeal.getId() != null) {
+                var previous = session.find(RentedHouse.class, editedDeal.getId(), LockModeType.PESSIMISTIC_WRITE);
+                if (!Objects.equals(previous == null ? null : previous.getIdHouse(), dealHouseId)) {
+                    session.getTransaction().rollback();
+                    return null;
+                }
+                if (previous != null) {
+                    // locked like the new house, so editHouse cannot recategorize the deal meanwhile
+                    before = RentalRollups.DealFacts.of(previous,
+                            session.find(House.class, previous.getIdHouse(), LockModeType.PESSIMISTIC_WRITE));
+                }
+            }
+
+            // as in createDeal, the house row lock serializes the overlap check with other bookings of the house
+            if (session.find(House.class, editedDeal.getIdHouse(), LockModeType.PESSIMISTIC_WRITE) == null) {
+                session.getTransaction().rollback();
+                return ExceptionHandler.handleInfoException(ResponseMessage.HOUSE_NOT_FOUND, HttpStatus.NOT_FOUND);
+            }
+            if (hasOverlappingDeal(session, editedDeal, editedDeal.getId())) {
+                session.getTransaction().rollback();
+                return ExceptionHandler.handleInfoException(ResponseMessage.HOUSE_ALREADY_BOOKED, HttpStatus.CONFLICT);
+            }
+
+            markActive(editedDeal);
+            var savedDeal = session.merge(editedDeal);
+            rentalRollups.dealChanged(session, before,
+                    RentalRollups.DealFacts.of(savedDeal, session.get(House.class, savedDeal.getIdHouse())));
             session.getTransaction().commit();
+            dealSaved(savedDeal);
 
             return new ResponseEntity<>(editedDeal, HttpStatus.CREATED);
 
@@ -272,15 +627,25 @@ public class RentedHouseService {
         }
     }
 
-    public ResponseEntity<?> extendDeal(String extendInfoJSON) {
+    // null when the deal is no longer on dealHouseId
+    private ResponseEntity<?> extendDealLocked(ExtendDealRequest extendRequest, Long dealHouseId) {
         try (var session = sessionController.openSession()) {
-            var extendInfoMap = new ObjectMapper().readValue(extendInfoJSON, Map.class);
+            int additionalDays = extendRequest.additionalDays();
+            BigDecimal additionalPrice = extendRequest.additionalPrice();
 
-            Long idRentedHouse = Long.valueOf((String) extendInfoMap.get("idRentedHouse")).longValue();
-            Integer additionalDays = Integer.valueOf((String) extendInfoMap.get("additionalDays")).intValue();
-            BigDecimal additionalPrice = new BigDecimal((String) extendInfoMap.get("additionalPrice"));
+            session.beginTransaction();
+            var deal = session.find(RentedHouse.class, extendRequest.idRentedHouse(), LockModeType.PESSIMISTIC_WRITE);
+            if (deal == null) {
+                session.getTransaction().rollback();
+                return ExceptionHandler.handleInfoException(ResponseMessage.DEAL_NOT_FOUND, HttpStatus.NOT_FOUND);
+            }
+            if (!deal.getIdHouse().equals(dealHouseId)) {
+                session.getTransaction().rollback();
+                return null;
+            }
+            var house = session.find(House.class, deal.getIdHouse(), LockModeType.PESSIMISTIC_WRITE);
+            var before = RentalRollups.DealFacts.of(deal, house);
 
-            var deal = session.get(RentedHouse.class, idRentedHouse);
             var newDuration = deal.getRentalDuration() + additionalDays;
             var newPrice = deal.getTotalAmount().add(additionalPrice);
 
@@ -292,9 +657,16 @@ public class RentedHouseService {
             calendar.add(Calendar.DATE, additionalDays);
             deal.setRentalEndDate(new Timestamp(calendar.getTime().getTime()));
 
-            session.beginTransaction();
+            if (hasOverlappingDeal(session, deal, deal.getId())) {
+                session.getTransaction().rollback();
+                return ExceptionHandler.handleInfoException(ResponseMessage.HOUSE_ALREADY_BOOKED, HttpStatus.CONFLICT);
+            }
+
+            markActive(deal);
             session.merge(deal);
+            rentalRollups.dealChanged(session, before, RentalRollups.DealFacts.of(deal, house));
             session.getTransaction().commit();
+            dealSaved(deal);
 
             return new ResponseEntity<>(deal, HttpStatus.CREATED);
 
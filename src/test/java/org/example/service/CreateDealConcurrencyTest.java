@@ -0,0 +1,137 @@
+package org.example.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.example.Main;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.DriverManager;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Many clients book the same house for overlapping dates at the same moment: exactly one booking may win, through
+ * the application and an embedded PostgreSQL, with the house lock and the row lock in place.
+ */
+class CreateDealConcurrencyTest {
+    private static final int THREADS = 32;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static EmbeddedPostgres postgres;
+    private static ConfigurableApplicationContext application;
+    private static HttpClient client;
+    private static URI baseUri;
+
+    @BeforeAll
+    static void start() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        try (var connection = postgres.getPostgresDatabase().getConnection()) {
+            connection.createStatement().execute("CREATE DATABASE \"House-Sharing\"");
+        }
+        // the schema is created by hbm2ddl
+        System.setProperty("hibernate.connection.url",
+                "jdbc:postgresql://localhost:" + postgres.getPort() + "/House-Sharing");
+        System.setProperty("hibernate.connection.username", "postgres");
+
+        application = SpringApplication.run(Main.class, "--server.port=0");
+        baseUri = URI.create("http://localhost:" + application.getEnvironment().getProperty("local.server.port"));
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        if (application != null) {
+            application.close();
+        }
+        if (postgres != null) {
+            postgres.close();
+        }
+        System.clearProperty("hibernate.connection.url");
+        System.clearProperty("hibernate.connection.username");
+    }
+
+    @Test
+    void concurrentOverlappingBookingsCreateOneDeal() throws Exception {
+        long clientId = post("/api/clients/create", MAPPER.createObjectNode()
+                .put("login", "concurrency-test")
+                .put("password", "concurrency-test")
+                .put("phoneNumber", "9000000000")).body().get("id").asLong();
+        var house = MAPPER.createObjectNode()
+                .put("address", "Concurrency test house")
+                .put("pricePerDay", 100)
+                .put("district", "Центр")
+                .put("comfortClass", "middleClass");
+        house.putArray("mapLocation").add(55.75).add(37.62);
+        long houseId = post("/api/houses/create", house).body().get("id").asLong();
+
+        // every range overlaps every other: starts within a day, three days long
+        var firstDay = LocalDate.now().plusDays(10);
+        var start = new CountDownLatch(1);
+        List<Future<Integer>> statuses = new ArrayList<>();
+        try (var executor = Executors.newFixedThreadPool(THREADS)) {
+            for (int i = 0; i < THREADS; i++) {
+                var deal = MAPPER.createObjectNode()
+                        .put("idHouse", houseId)
+                        .put("idClient", clientId)
+                        .put("rentalStartDate", firstDay.atStartOfDay().plusMinutes(30L * i) + ":00.000")
+                        .put("rentalDuration", 3)
+                        .put("totalAmount", 300);
+                statuses.add(executor.submit(() -> {
+                    start.await();
+                    return post("/api/rented-houses/create-deal", deal).status();
+                }));
+            }
+            start.countDown();
+        }
+
+        int created = 0;
+        int conflicts = 0;
+        for (var status : statuses) {
+            switch (status.get()) {
+                case 201 -> created++;
+                case 409 -> conflicts++;
+                default -> throw new AssertionError("Unexpected status " + status.get());
+            }
+        }
+        assertEquals(1, created);
+        assertEquals(THREADS - 1, conflicts);
+
+        try (var connection = DriverManager.getConnection(
+                System.getProperty("hibernate.connection.url"), "postgres", "");
+             var count = connection.prepareStatement("SELECT count(*) FROM rented_house WHERE id_house = ?")) {
+            count.setLong(1, houseId);
+            var result = count.executeQuery();
+            result.next();
+            assertEquals(1, result.getLong(1));
+        }
+    }
+
+    private record Response(int status, JsonNode body) {
+    }
+
+    private static Response post(String path, JsonNode body) throws Exception {
+        var request = HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return new Response(response.statusCode(),
+                response.body().isEmpty() ? null : MAPPER.readTree(response.body()));
+    }
+}